@@ -92,6 +92,14 @@ public interface Clusterable {
     /**
      * A clusterable element has properties. They can have defined a value and
      * it can be retrieved using getAttribute() methods.
+     * 
+     * PACKED_COORDINATES and PACKED_POINT are views of REPRESENTATIVE_COORDINATES
+     * and REPRESENTATIVE_POINT as a double[] with the x and y of every point
+     * one after another. They must not be modified, as they may be cached.
+     * POINT_INDEX is a PointIndex over the representative coordinates, for
+     * nearest point queries. ENVELOPE is the JTS Envelope of the
+     * representative geometry, and must not be modified either.
      */
-    enum Property {FEATURE_TYPE, REPRESENTATIVE_GEOMETRY, REPRESENTATIVE_COORDINATES, REPRESENTATIVE_POINT, CLUSTERS_ITERATOR}
+    enum Property {FEATURE_TYPE, REPRESENTATIVE_GEOMETRY, REPRESENTATIVE_COORDINATES, REPRESENTATIVE_POINT, CLUSTERS_ITERATOR,
+        PACKED_COORDINATES, PACKED_POINT, POINT_INDEX, ENVELOPE}
 }
@@ -1,6 +1,9 @@
 package es.unizar.iaaa.ml.adapter;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
 
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.FeatureType;
@@ -8,15 +11,26 @@ import org.opengis.feature.type.FeatureType;
 import java.util.Arrays;
 import java.util.List;
 
+import es.unizar.iaaa.ml.util.PointIndex;
+
 /**
  * This class is an implementation of clusterable that allows simple features
  * to be added to a cluster.
  * 
+ * The packed coordinates of the representative geometry and of its centroid,
+ * the index of its coordinates and its envelope, are computed the first time
+ * they are requested and kept afterwards, so the geometry of the feature must
+ * not change once it has been wrapped.
+ * 
  * @author Javier Beltran
  */
 public class SimpleFeatureClusterable implements Clusterable {
 
     private SimpleFeature feature;
+    private volatile double[] packedCoordinates;
+    private volatile double[] packedPoint;
+    private volatile PointIndex pointIndex;
+    private volatile Envelope envelope;
 
     public SimpleFeatureClusterable(SimpleFeature feature) {
         this.feature = feature;
@@ -124,11 +138,47 @@ public class SimpleFeatureClusterable implements Clusterable {
                 return clazz.cast(getRepresentativeJTSGeometry().getCentroid());
             case FEATURE_TYPE:
                 return clazz.cast(feature.getFeatureType());
+            case PACKED_COORDINATES:
+                if (packedCoordinates == null) {
+                    packedCoordinates = pack(getRepresentativeJTSGeometry().getCoordinates());
+                }
+                return clazz.cast(packedCoordinates);
+            case PACKED_POINT:
+                if (packedPoint == null) {
+                    Point point = getRepresentativeJTSGeometry().getCentroid();
+                    packedPoint = point.isEmpty() ? new double[0] : new double[] {point.getX(), point.getY()};
+                }
+                return clazz.cast(packedPoint);
+            case POINT_INDEX:
+                if (pointIndex == null) {
+                    pointIndex = new PointIndex(getAttribute(Property.PACKED_COORDINATES, double[].class));
+                }
+                return clazz.cast(pointIndex);
+            case ENVELOPE:
+                if (envelope == null) {
+                    envelope = new Envelope(getRepresentativeJTSGeometry().getEnvelopeInternal());
+                }
+                return clazz.cast(envelope);
             default:
                 return null;
         }
     }
 
+    /**
+     * Packs the x and y of some coordinates into a single array.
+     * 
+     * @param coordinates the coordinates.
+     * @return an array with the x and y of every coordinate, one after another.
+     */
+    private static double[] pack(Coordinate[] coordinates) {
+        double[] packed = new double[2 * coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            packed[2 * i] = coordinates[i].x;
+            packed[2 * i + 1] = coordinates[i].y;
+        }
+        return packed;
+    }
+
     /**
      * Retrieves the value of the list of attributes with a name.
      * 
@@ -52,8 +52,11 @@ public class CentroidSelector implements CenterSelector {
 		cy /= numFeatures;
 		Point p = factory.createPoint(new Coordinate(cx, cy));
 		
-		builder.add(p);
-		return builder.buildFeature(null);
+		/* The builder keeps the values added, so it is used by one thread at a time */
+		synchronized (builder) {
+			builder.add(p);
+			return builder.buildFeature(null);
+		}
 	}
 
 }
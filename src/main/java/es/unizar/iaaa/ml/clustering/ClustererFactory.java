@@ -1,5 +1,9 @@
 package es.unizar.iaaa.ml.clustering;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.distance.DistanceMeasure;
 import es.unizar.iaaa.ml.parameter.Parameter;
@@ -7,10 +11,33 @@ import es.unizar.iaaa.ml.parameter.Parameter;
 /**
  * A factory for creating instances of FeatureClusterer.
  * 
+ * A factory created with a seed gives every clusterer its own seed, drawn
+ * from it in order. Thus, the same sequence of calls gives clusterers that
+ * make the same random choices, while clusterers run at the same time, like
+ * those of a multi-start clusterer, draw independent sequences.
+ * 
  * @author Javier Beltran
  */
 public class ClustererFactory {
 	
+	private final Random seeds;
+	
+	/**
+	 * Creates a factory of clusterers whose random choices are not seeded.
+	 */
+	public ClustererFactory() {
+		seeds = null;
+	}
+	
+	/**
+	 * Creates a factory of clusterers whose random choices are seeded.
+	 * 
+	 * @param seed the seed from which every clusterer seed is drawn.
+	 */
+	public ClustererFactory(long seed) {
+		seeds = new Random(seed);
+	}
+	
 	/**
 	 * Creates a new KMeans clusterer algorithm.
 	 * 
@@ -22,7 +49,25 @@ public class ClustererFactory {
 	 */
 	public KMeansClusterer newKMeansClusterer(int k, DistanceMeasure distance, 
 			ClusterBuilder builder, Parameter[] params) {
-		return new KMeansClusterer(k, distance, builder, params);
+		return seeded(new KMeansClusterer(k, distance, builder, params));
+	}
+	
+	/**
+	 * Creates a new KMeans clusterer algorithm whose assignment step skips the
+	 * distances ruled out by the triangle inequality. It gives the same clusters
+	 * as the basic algorithm, as long as the distance measure is a metric.
+	 * 
+	 * @param k the number of clusters.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of KMeansClusterer.
+	 */
+	public KMeansClusterer newAcceleratedKMeansClusterer(int k, DistanceMeasure distance, 
+			ClusterBuilder builder, Parameter[] params) {
+		KMeansClusterer clusterer = seeded(new KMeansClusterer(k, distance, builder, params));
+		clusterer.setAccelerated(true);
+		return clusterer;
 	}
 	
 	/**
@@ -36,12 +81,103 @@ public class ClustererFactory {
 	 */
 	public KMeansPlusPlusClusterer newKMeansPlusPlusClusterer(int k, DistanceMeasure distance, 
 			ClusterBuilder builder, Parameter[] params) {
-		return new KMeansPlusPlusClusterer(k, distance, builder, params);
+		return seeded(new KMeansPlusPlusClusterer(k, distance, builder, params));
+	}
+	
+	/**
+	 * Creates a new KMeans clusterer algorithm initialized with k-means||. Its
+	 * sampling rounds and assignment steps run on all the available cores.
+	 * 
+	 * @param k the number of clusters.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of KMeansParallelClusterer.
+	 */
+	public KMeansParallelClusterer newKMeansParallelClusterer(int k, DistanceMeasure distance, 
+			ClusterBuilder builder, Parameter[] params) {
+		KMeansParallelClusterer clusterer = seeded(
+				new KMeansParallelClusterer(k, distance, builder, params));
+		clusterer.setParallelism(Runtime.getRuntime().availableProcessors());
+		return clusterer;
+	}
+	
+	/**
+	 * Creates a new clusterer that runs the KMeans algorithm several times,
+	 * concurrently, and keeps the clusters with the lowest cost.
+	 * 
+	 * @param starts the number of runs.
+	 * @param k the number of clusters.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of MultiStartKMeansClusterer.
+	 */
+	public MultiStartKMeansClusterer newMultiStartKMeansClusterer(int starts, int k,
+			DistanceMeasure distance, ClusterBuilder builder, Parameter[] params) {
+		List<KMeansClusterer> clusterers = new ArrayList<>(starts);
+		for (int i=0; i<starts; i++) {
+			clusterers.add(newKMeansClusterer(k, distance, builder, params));
+		}
+		return newMultiStartClusterer(clusterers);
+	}
+	
+	/**
+	 * Creates a new clusterer that runs the KMeans++ algorithm several times,
+	 * concurrently, and keeps the clusters with the lowest cost.
+	 * 
+	 * @param starts the number of runs.
+	 * @param k the number of clusters.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of MultiStartKMeansClusterer.
+	 */
+	public MultiStartKMeansClusterer newMultiStartKMeansPlusPlusClusterer(int starts, int k,
+			DistanceMeasure distance, ClusterBuilder builder, Parameter[] params) {
+		List<KMeansClusterer> clusterers = new ArrayList<>(starts);
+		for (int i=0; i<starts; i++) {
+			clusterers.add(newKMeansPlusPlusClusterer(k, distance, builder, params));
+		}
+		return newMultiStartClusterer(clusterers);
+	}
+	
+	/**
+	 * Creates a new clusterer that runs some KMeans clusterers, concurrently,
+	 * and keeps the clusters with the lowest cost. There are as many threads
+	 * as clusterers, up to the number of available cores.
+	 * 
+	 * @param clusterers the clusterers to be run, all different instances.
+	 * @return an instance of MultiStartKMeansClusterer.
+	 */
+	public MultiStartKMeansClusterer newMultiStartClusterer(List<? extends KMeansClusterer> clusterers) {
+		MultiStartKMeansClusterer clusterer = new MultiStartKMeansClusterer(clusterers);
+		clusterer.setParallelism(Math.max(1,
+				Math.min(clusterers.size(), Runtime.getRuntime().availableProcessors())));
+		return clusterer;
 	}
 	
 	/**
-	 * Creates a new DBSCAN clusterer algorithm.
+	 * Creates a new mini-batch KMeans clusterer algorithm.
 	 * 
+	 * @param k the number of clusters.
+	 * @param batchSize the number of features in every batch.
+	 * @param iterations the number of batches used to fit the centroids.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of MiniBatchKMeansClusterer.
+	 */
+	public MiniBatchKMeansClusterer newMiniBatchKMeansClusterer(int k, int batchSize, int iterations,
+			DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
+		return seeded(new MiniBatchKMeansClusterer(k, batchSize, iterations, distance, builder, params));
+	}
+	
+	/**
+	 * Creates a new DBSCAN clusterer algorithm. With the euclidean distance,
+	 * region queries are answered with a grid of points, which gives the same
+	 * clusters.
+	 *
 	 * @param eps the max distance between neighbors.
 	 * @param minPts the minimum number of elements to create a cluster.
 	 * @param distance the distance measure used.
@@ -49,9 +185,98 @@ public class ClustererFactory {
 	 * @param params a list of parameters for the clusterer.
 	 * @return an instance of DBSCANClusterer.
 	 */
-	public DBSCANClusterer newDBSCANClusterer(double eps, int minPts, 
+	public DBSCANClusterer newDBSCANClusterer(double eps, int minPts,
 			DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
-		return new DBSCANClusterer(eps, minPts, distance, builder, params);
+		if (GridDBSCANClusterer.supports(distance)) {
+			return seeded(new GridDBSCANClusterer(eps, minPts, distance, builder, params));
+		}
+		return seeded(new DBSCANClusterer(eps, minPts, distance, builder, params));
+	}
+	
+	/**
+	 * Creates a new DBSCAN clusterer algorithm that answers its region queries
+	 * in the specified way.
+	 * 
+	 * @param eps the max distance between neighbors.
+	 * @param minPts the minimum number of elements to create a cluster.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param index the way of answering region queries.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of DBSCANClusterer.
+	 */
+	public DBSCANClusterer newDBSCANClusterer(double eps, int minPts, DistanceMeasure distance,
+			ClusterBuilder builder, DBSCANClusterer.Index index, Parameter... params) {
+		return seeded(new DBSCANClusterer(eps, minPts, distance, builder, index, params));
+	}
+	
+	/**
+	 * Creates a new DBSCAN clusterer algorithm that splits the features into
+	 * spatial tiles and processes them on all the available cores. It gives
+	 * the same clusters as the sequential algorithm, as long as the distance
+	 * measure is never smaller than the gap between the envelopes of the
+	 * features.
+	 * 
+	 * @param eps the max distance between neighbors.
+	 * @param minPts the minimum number of elements to create a cluster.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of PartitionedDBSCANClusterer.
+	 */
+	public PartitionedDBSCANClusterer newPartitionedDBSCANClusterer(double eps, int minPts,
+			DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
+		PartitionedDBSCANClusterer clusterer = seeded(
+				new PartitionedDBSCANClusterer(eps, minPts, distance, builder, params));
+		clusterer.setParallelism(Runtime.getRuntime().availableProcessors());
+		return clusterer;
+	}
+
+	/**
+	 * Creates a new DBSCAN clusterer algorithm that keeps its state, so that
+	 * new features can be inserted in batches afterwards.
+	 *
+	 * @param eps the max distance between neighbors.
+	 * @param minPts the minimum number of elements to create a cluster.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of IncrementalDBSCANClusterer.
+	 */
+	public IncrementalDBSCANClusterer newIncrementalDBSCANClusterer(double eps, int minPts,
+			DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
+		return seeded(new IncrementalDBSCANClusterer(eps, minPts, distance, builder, params));
+	}
+
+	/**
+	 * Creates a new OPTICS clusterer algorithm. After clustering, the clusters
+	 * of DBSCAN for any eps up to the max eps can be extracted without
+	 * clustering again.
+	 *
+	 * @param maxEps the max distance between neighbors of any extraction.
+	 * @param minPts the minimum number of elements to create a cluster.
+	 * @param distance the distance measure used.
+	 * @param builder the cluster builder used.
+	 * @param index the way of answering region queries.
+	 * @param params a list of parameters for the clusterer.
+	 * @return an instance of OPTICSClusterer.
+	 */
+	public OPTICSClusterer newOPTICSClusterer(double maxEps, int minPts, DistanceMeasure distance,
+			ClusterBuilder builder, DBSCANClusterer.Index index, Parameter... params) {
+		return seeded(new OPTICSClusterer(maxEps, minPts, distance, builder, index, params));
+	}
+
+	/**
+	 * Gives a clusterer the next seed, if this factory is seeded.
+	 * 
+	 * @param clusterer the clusterer to be seeded.
+	 * @return the same clusterer.
+	 */
+	private <T extends FeatureClusterer> T seeded(T clusterer) {
+		if (seeds != null) {
+			clusterer.setSeed(seeds.nextLong());
+		}
+		return clusterer;
 	}
 
 }
@@ -1,17 +1,13 @@
 package es.unizar.iaaa.ml.clustering;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import es.unizar.iaaa.ml.adapter.Cluster;
 import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
 import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
 
@@ -20,135 +16,183 @@ import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
  * features. It requires two parameters to work: an epsilon, eps; and the 
  * minimum number of features required to make a cluster, minPts.
  *
+ * Region queries can be answered by scanning every feature, or by pruning the
+ * candidates with a spatial index before computing the exact distance. Both
+ * ways produce the same clusters.
+ *
  * @author Javier Beltran
  */
 public class DBSCANClusterer extends FeatureClusterer {
 
-    private double eps;
-    private int minPts;
+    protected double eps;
+    protected int minPts;
+    private Index index;
+    private NeighborIndex neighborIndex;
 
     protected DBSCANClusterer(double eps, int minPts, DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
+        this(eps, minPts, distance, builder, Index.LINEAR_SCAN, params);
+    }
+
+    protected DBSCANClusterer(double eps, int minPts, DistanceMeasure distance, ClusterBuilder builder, Index index,
+            Parameter... params) {
         super(distance, builder, params);
 
         this.eps = eps;
         this.minPts = minPts;
+        this.index = index;
     }
 
     /**
      * Given the entry features, returns a list of feature collections, each 
      * representing a cluster.
      *
+     * Features are identified by their position in the list. The neighbors of
+     * every feature are retrieved once: core features are merged with their
+     * core neighbors, and the neighbors of the other ones are kept until the
+     * clusters are known. Clusters are numbered in the order of their first
+     * core feature, and a border feature joins the first cluster it is next
+     * to, so the clusters are those of the classic expansion of clusters in
+     * the order of the list.
+     *
      * @param features a list of features to be clusterized
      * @return a list of clusters (feature collections).
      */
     public List<Cluster> cluster(List<Clusterable> features) throws ParameterNotFoundException {
-        final List<Cluster> clusters = new ArrayList<>();
-        final Map<Clusterable, FeatureStatus> visited = new HashMap<>();
-
-        for (final Clusterable feature : features) {
-            /* Features already classified are not processed */
-            if (visited.get(feature) != null) {
-                continue;
-            }
+        bindDistance();
+        neighborIndex = index == Index.STR_TREE ? new NeighborIndex(features, eps) : null;
+        try {
+            return merge(features);
+        } finally {
+            neighborIndex = null;
+        }
+    }
 
-            final List<Clusterable> neighbors = getNeighbors(feature, features);
-            if (neighbors.size() >= minPts) {
-                /* Creates a cluster with the feature and its neighbors */
-                clusters.add(builder.create(expand(feature, neighbors, features, visited)));
+    /**
+     * Retrieves the neighbors of every feature, merges the core features that
+     * are neighbors and creates the clusters.
+     *
+     * @param features a list of features to be clusterized
+     * @return a list of clusters (feature collections).
+     */
+    List<Cluster> merge(List<Clusterable> features) throws ParameterNotFoundException {
+        int size = features.size();
+        boolean[] core = new boolean[size];
+        int[][] borderNeighbors = new int[size][];
+        DisjointSets cores = new DisjointSets(size);
+        int[] neighbors = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            int count = getNeighbors(i, features, neighbors);
+            if (count >= minPts) {
+                /* Merges the feature with its core neighbors found so far */
+                core[i] = true;
+                for (int j = 0; j < count; j++) {
+                    if (core[neighbors[j]]) {
+                        cores.union(i, neighbors[j]);
+                    }
+                }
             } else {
-				/* Otherwise, the feature is classified as noise */
-                visited.put(feature, FeatureStatus.NOISE);
+                /* Otherwise, it is a border feature or noise */
+                borderNeighbors[i] = Arrays.copyOf(neighbors, count);
             }
         }
 
-        return clusters;
+        return toClusters(features, label(core, borderNeighbors, cores));
     }
 
     /**
-     * Creates a cluster from a feature, a list of its neighbors, a list of all 
-     * the features (as the algorithm is concerned about neighbors of neighbors)
-     * and information about what features are not part of the cluster.
+     * Labels every feature with the number of its cluster. Clusters are
+     * numbered in the order of their first core feature, and every border
+     * feature takes the lowest number among its core neighbors.
      *
-     * @param feature   the feature that originates the cluster.
-     * @param neighbors the neighbors of the feature.
-     * @param features  a list with all the features.
-     * @param visited   a map that holds info about the status of every feature.
-     * @return a list containing all the features forming a cluster.
+     * @param core           whether every feature is a core feature.
+     * @param borderNeighbors the neighbors of every feature that is not core.
+     * @param cores          the sets of core features of every cluster.
+     * @return the cluster of every feature, or NOISE.
      */
-    private List<Clusterable> expand(Clusterable feature, List<Clusterable> neighbors, List<Clusterable> features,
-    		Map<Clusterable, FeatureStatus> visited) throws ParameterNotFoundException {
-        List<Clusterable> cluster = new ArrayList<>();
-
-		/* Adds the feature that originates the cluster */
-        cluster.add(feature);
-        visited.put(feature, FeatureStatus.PART_OF_CLUSTER);
-
-        List<Clusterable> candidates = new ArrayList<>(neighbors);
-        for (int i = 0; i < candidates.size(); i++) {
-            final Clusterable current = candidates.get(i);
-            final FeatureStatus currentStatus = visited.get(current);
-
-			/* Get the neighbors of non-visited neighbors */
-            if (currentStatus == null) {
-                final List<Clusterable> currentNeighbors = getNeighbors(current, features);
-                if (currentNeighbors.size() >= minPts) {
-                    candidates = merge(candidates, currentNeighbors);
-                }
+    int[] label(boolean[] core, int[][] borderNeighbors, DisjointSets cores) {
+        int[] labels = new int[core.length];
+        int clusters = 0;
+        for (int i = 0; i < core.length; i++) {
+            if (core[i]) {
+                int root = cores.find(i);
+                labels[i] = root == i ? clusters++ : labels[root];
+            } else {
+                labels[i] = NOISE;
             }
+        }
 
-			/* Adds candidates that are not part of the cluster */
-            if (currentStatus != FeatureStatus.PART_OF_CLUSTER) {
-                visited.put(current, FeatureStatus.PART_OF_CLUSTER);
-                cluster.add(current);
+        for (int i = 0; i < core.length; i++) {
+            if (!core[i]) {
+                for (int neighbor : borderNeighbors[i]) {
+                    if (core[neighbor] && (labels[i] == NOISE || labels[neighbor] < labels[i])) {
+                        labels[i] = labels[neighbor];
+                    }
+                }
             }
         }
-
-        return cluster;
+        return labels;
     }
 
     /**
-     * Adds list l2 to list l1, with no repeated elements.
-     * 
-     * @param l1 one list of features.
-     * @param l2 another list of features.
-     * @return a merged list with the features from l1 and l2, with no repeated
-     * elements.
+     * Given the position of a feature, retrieves the positions of its
+     * neighbors. Two features are neighbors if the distance between them is
+     * <= eps. If there is a spatial index, only the candidates returned by it
+     * are checked. The distances greater than eps are not computed in full.
+     *
+     * @param i         the position of the feature whose neighbors are being
+     *                  retrieved.
+     * @param features  the features that can be neighbors of feature.
+     * @param neighbors an array where the positions of the neighbors are
+     *                  written, in ascending order.
+     * @return the number of neighbors.
      */
-    private List<Clusterable> merge(List<Clusterable> l1, List<Clusterable> l2) {
-        final Set<Clusterable> oneSet = new HashSet<>(l1);
-        for (Clusterable item : l2) {
-            if (!oneSet.contains(item)) {
-                l1.add(item);
+    int getNeighbors(int i, List<Clusterable> features, int[] neighbors)
+            throws ParameterNotFoundException {
+        Clusterable feature = features.get(i);
+        int count = 0;
+        if (neighborIndex != null) {
+            for (final int candidate : neighborIndex.candidates(feature)) {
+                if (isNeighbor(i, candidate, features)) {
+                    neighbors[count++] = candidate;
+                }
+            }
+        } else {
+            for (int candidate = 0; candidate < features.size(); candidate++) {
+                if (isNeighbor(i, candidate, features)) {
+                    neighbors[count++] = candidate;
+                }
             }
         }
-        return l1;
+
+        return count;
     }
 
     /**
-     * Given a feature and a list of possible neighbors, returns a list with the
-     * neighbors of that feature. Two features are neighbors if the distance 
-     * between them is <= eps.
+     * Checks if a feature is at a distance <= eps from another feature.
      *
-     * @param feature  the feature whose neighbors are being retrieved.
-     * @param features the features that can be neighbors of feature.
-     * @return a list of features, containing the neighbors of feature.
+     * @param i         the position of the feature whose neighbors are being
+     *                  retrieved.
+     * @param candidate the position of the possible neighbor.
+     * @param features  a list with all the features.
+     * @return true, if the candidate is a neighbor.
      */
-    private List<Clusterable> getNeighbors(final Clusterable feature, final Collection<Clusterable> features)
-    		throws ParameterNotFoundException {
-        final List<Clusterable> neighbors = new ArrayList<>();
-        for (final Clusterable neighbor : features) {
-			/* Checks distance and the neighbor not being itself */
-            if (feature != neighbor && distance.distance(neighbor, feature, params) <= eps) {
-                neighbors.add(neighbor);
-            }
-        }
-
-        return neighbors;
+    boolean isNeighbor(int i, int candidate, List<Clusterable> features)
+            throws ParameterNotFoundException {
+        /* Checks the neighbor not being itself, and its distance */
+        return candidate != i && DistanceMeasureBuilder.isWithin(boundDistance, features.get(candidate),
+                features.get(i), eps, params);
     }
 
-    /* Features can be part of a cluster or noise (not part of any) */
-    private enum FeatureStatus {
-        NOISE, PART_OF_CLUSTER
+    /**
+     * The ways of answering region queries. LINEAR_SCAN computes the distance
+     * to every feature, while STR_TREE first discards the features whose
+     * envelopes are farther than eps. The index is only valid for distance
+     * measures that are never smaller than the gap between the envelopes of
+     * the features, like the euclidean and hausdorff distances.
+     */
+    public enum Index {
+        LINEAR_SCAN, STR_TREE
     }
 
 }
@@ -0,0 +1,163 @@
+package es.unizar.iaaa.ml.clustering;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over the positions 0 to n-1, used to merge the core
+ * features of a cluster. New positions can be added afterwards. The root of
+ * every set is its lowest position, so the sets can be numbered in the order
+ * of their first element.
+ *
+ * Every set can also keep a list of members, that are any non-negative ints,
+ * like the positions of the features of a cluster. The lists are linked
+ * through primitive arrays, allocated when the first member is added, and
+ * they are concatenated when their sets are joined, so the members of a set
+ * are retrieved without visiting the rest.
+ *
+ * @author Javier Beltran
+ */
+class DisjointSets {
+
+    /* Marker of the end of a list of members */
+    private static final int NONE = -1;
+
+    private int[] parent;
+    private int size;
+    private int[] head;
+    private int[] tail;
+    private int[] counts;
+    private int[] next;
+
+    DisjointSets(int size) {
+        parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+        this.size = size;
+    }
+
+    /**
+     * Adds a new position, in a set of its own.
+     *
+     * @return the new position.
+     */
+    int add() {
+        if (size == parent.length) {
+            parent = Arrays.copyOf(parent, Math.max(16, 2 * size));
+            if (head != null) {
+                head = Arrays.copyOf(head, parent.length);
+                tail = Arrays.copyOf(tail, parent.length);
+                counts = Arrays.copyOf(counts, parent.length);
+            }
+        }
+        parent[size] = size;
+        if (head != null) {
+            head[size] = NONE;
+            counts[size] = 0;
+        }
+        return size++;
+    }
+
+    /**
+     * Retrieves the number of positions.
+     *
+     * @return the number of positions.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the root of the set of a position, halving the path to it on the
+     * way.
+     *
+     * @param i the position.
+     * @return the lowest position of its set.
+     */
+    int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Joins the sets of two positions.
+     *
+     * @param i one position.
+     * @param j another position.
+     * @return true, if they were in different sets.
+     */
+    boolean union(int i, int j) {
+        int rootI = find(i);
+        int rootJ = find(j);
+        if (rootI == rootJ) {
+            return false;
+        }
+        int root = Math.min(rootI, rootJ);
+        int other = Math.max(rootI, rootJ);
+        parent[other] = root;
+        if (head != null && head[other] != NONE) {
+            /* Appends the members of the other set */
+            if (head[root] == NONE) {
+                head[root] = head[other];
+            } else {
+                next[tail[root]] = head[other];
+            }
+            tail[root] = tail[other];
+            counts[root] += counts[other];
+            head[other] = NONE;
+            counts[other] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a member to the list of the set of a position.
+     *
+     * @param i      the position.
+     * @param member the member, which must be non-negative and not be in any
+     *               list yet.
+     */
+    void addMember(int i, int member) {
+        if (head == null) {
+            head = new int[parent.length];
+            Arrays.fill(head, NONE);
+            tail = new int[parent.length];
+            counts = new int[parent.length];
+            next = new int[16];
+        }
+        if (member >= next.length) {
+            next = Arrays.copyOf(next, Math.max(member + 1, 2 * next.length));
+        }
+        int root = find(i);
+        next[member] = NONE;
+        if (head[root] == NONE) {
+            head[root] = member;
+        } else {
+            next[tail[root]] = member;
+        }
+        tail[root] = member;
+        counts[root]++;
+    }
+
+    /**
+     * Retrieves the members of the set of a position.
+     *
+     * @param i the position.
+     * @return the members, in no particular order.
+     */
+    int[] members(int i) {
+        if (head == null) {
+            return new int[0];
+        }
+        int root = find(i);
+        int[] members = new int[counts[root]];
+        for (int member = head[root], k = 0; member != NONE; member = next[member]) {
+            members[k++] = member;
+        }
+        return members;
+    }
+
+}
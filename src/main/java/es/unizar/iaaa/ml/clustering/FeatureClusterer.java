@@ -2,28 +2,42 @@ package es.unizar.iaaa.ml.clustering;
 
 import org.geotools.feature.SchemaException;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import es.unizar.iaaa.ml.adapter.Cluster;
 import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
 import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
 
 /**
  * A feature clusterer is a clustering algorithm adapted to geospatial features.
  *
+ * The random choices of an algorithm are drawn from its own random number
+ * generator. When a seed is set, the generator restarts from it in every
+ * execution, so the same features always give the same clusters.
+ *
  * @author Javier Beltran
  */
 public abstract class FeatureClusterer {
 
+    /* Label of the features that are not part of any cluster */
+    protected static final int NOISE = -1;
+
     protected DistanceMeasure distance;
+    protected DistanceMeasure boundDistance;
     protected Parameter[] params;
     protected ClusterBuilder builder;
+    protected Random random = new Random();
+    private Long seed;
 
     protected FeatureClusterer(DistanceMeasure distance, ClusterBuilder builder, Parameter... params) {
         this.distance = distance;
+        this.boundDistance = distance;
         this.params = params;
         this.builder = builder;
     }
@@ -37,4 +51,72 @@ public abstract class FeatureClusterer {
     public abstract List<Cluster> cluster(List<Clusterable> features)
     		throws ParameterNotFoundException, SchemaException;
 
+    /**
+     * Sets the seed of the random choices of the algorithm. Without a seed,
+     * every execution makes different choices.
+     *
+     * @param seed the seed of the random number generator.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Restarts the random number generator from the seed, if there is one, so
+     * that an execution does not depend on the previous ones.
+     */
+    protected void resetRandom() {
+        random = seed != null ? new Random(seed) : new Random();
+    }
+
+    /**
+     * Binds the distance measure to the parameters, so that they are resolved
+     * once before clustering instead of in every distance computation. The
+     * distances of an execution are computed with boundDistance, which ignores
+     * the parameters passed to it afterwards, while the distance measure that
+     * was configured is left unchanged.
+     *
+     * @throws ParameterNotFoundException when a required parameter is missing.
+     */
+    protected void bindDistance() throws ParameterNotFoundException {
+        boundDistance = DistanceMeasureBuilder.bind(distance, params);
+    }
+
+    /**
+     * Groups the features by their labels, and creates a cluster with every
+     * group. The features of a cluster keep the order of the list.
+     *
+     * @param features a list with all the features.
+     * @param labels   the cluster of every feature, numbered from 0, or NOISE.
+     * @return a list of clusters.
+     */
+    protected List<Cluster> toClusters(List<Clusterable> features, int[] labels) {
+        int clusters = 0;
+        for (int label : labels) {
+            clusters = Math.max(clusters, label + 1);
+        }
+        int[] sizes = new int[clusters];
+        for (int label : labels) {
+            if (label != NOISE) {
+                sizes[label]++;
+            }
+        }
+
+        List<List<Clusterable>> lists = new ArrayList<>(clusters);
+        for (int size : sizes) {
+            lists.add(new ArrayList<Clusterable>(size));
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] != NOISE) {
+                lists.get(labels[i]).add(features.get(i));
+            }
+        }
+
+        List<Cluster> result = new ArrayList<>(clusters);
+        for (List<Clusterable> list : lists) {
+            result.add(builder.create(list));
+        }
+        return result;
+    }
+
 }
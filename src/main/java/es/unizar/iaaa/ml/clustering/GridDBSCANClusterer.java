@@ -0,0 +1,216 @@
+package es.unizar.iaaa.ml.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.EuclideanDistance;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A DBSCAN clusterer for the euclidean distance between representative points.
+ * The points are hashed into a grid of square cells slightly larger than eps,
+ * so the neighbors of a feature can only be in its own cell or in the eight
+ * cells around it, and the region queries take near constant time when the
+ * points are evenly spread. The cells are found by their coordinates in a hash
+ * map with primitive long keys.
+ *
+ * Clusters are labelled as DBSCANClusterer does, so they are the same, in the
+ * same order. If some feature has no point or its point is not finite, or the
+ * points span too many cells, the features are clustered with a spatial index
+ * instead.
+ *
+ * @author Javier Beltran
+ */
+public class GridDBSCANClusterer extends DBSCANClusterer {
+
+    /* Relative margin of the side of a cell over eps, for rounding errors */
+    private static final double MARGIN = 1e-6;
+    /* Maximum number of cells along each axis, so rounding errors stay small */
+    private static final double MAX_CELLS = 1 << 24;
+
+    private double[] xs;
+    private double[] ys;
+    private int[] columns;
+    private int[] rows;
+    private LongIntHashMap cells;
+    private int[] cellStarts;
+    private int[] members;
+
+    protected GridDBSCANClusterer(double eps, int minPts, DistanceMeasure distance, ClusterBuilder builder,
+            Parameter... params) {
+        super(eps, minPts, distance, builder, Index.STR_TREE, params);
+
+        if (!supports(distance)) {
+            throw new IllegalArgumentException("Distance measure must be the euclidean distance");
+        }
+    }
+
+    /**
+     * Checks if a distance measure is a point metric that this clusterer can
+     * answer region queries for, that is, the euclidean distance.
+     *
+     * @param distance the distance measure.
+     * @return true, if the grid can be used with it.
+     */
+    public static boolean supports(DistanceMeasure distance) {
+        return distance != null && distance.getClass() == EuclideanDistance.class;
+    }
+
+    /**
+     * Given the entry features, returns a list of feature collections, each
+     * representing a cluster.
+     *
+     * @param features a list of features to be clusterized
+     * @return a list of clusters (feature collections).
+     */
+    @Override
+    public List<Cluster> cluster(List<Clusterable> features) throws ParameterNotFoundException {
+        bindDistance();
+        if (!buildGrid(features)) {
+            return super.cluster(features);
+        }
+        try {
+            return merge(features);
+        } finally {
+            xs = null;
+            ys = null;
+            columns = null;
+            rows = null;
+            cells = null;
+            cellStarts = null;
+            members = null;
+        }
+    }
+
+    /**
+     * Hashes the representative point of every feature into its cell, and
+     * lists the features of every cell in order.
+     *
+     * @param features the list of features.
+     * @return true, if the grid was built, or false if it cannot be used.
+     */
+    private boolean buildGrid(List<Clusterable> features) {
+        int size = features.size();
+        double side = eps * (1 + MARGIN);
+        if (!(side > 0) || Double.isInfinite(side)) {
+            return false;
+        }
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            double[] point = features.get(i).getAttribute(Clusterable.Property.PACKED_POINT, double[].class);
+            if (point == null || point.length < 2 || Double.isNaN(point[0] - point[0])
+                    || Double.isNaN(point[1] - point[1])) {
+                return false;
+            }
+            x[i] = point[0];
+            y[i] = point[1];
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        if ((maxX - minX) / side > MAX_CELLS || (maxY - minY) / side > MAX_CELLS) {
+            return false;
+        }
+
+        /* Numbers the cells in order of appearance, and counts their features */
+        int[] column = new int[size];
+        int[] row = new int[size];
+        int[] cellOf = new int[size];
+        int[] counts = new int[size + 1];
+        LongIntHashMap map = new LongIntHashMap(size);
+        for (int i = 0; i < size; i++) {
+            column[i] = (int) ((x[i] - minX) / side);
+            row[i] = (int) ((y[i] - minY) / side);
+            long key = key(column[i], row[i]);
+            int cell = map.get(key);
+            if (cell == LongIntHashMap.MISSING) {
+                cell = map.size();
+                map.put(key, cell);
+            }
+            cellOf[i] = cell;
+            counts[cell + 1]++;
+        }
+
+        int[] starts = Arrays.copyOf(counts, map.size() + 1);
+        for (int c = 0; c < map.size(); c++) {
+            starts[c + 1] += starts[c];
+        }
+        int[] next = Arrays.copyOf(starts, map.size());
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[next[cellOf[i]]++] = i;
+        }
+
+        xs = x;
+        ys = y;
+        columns = column;
+        rows = row;
+        cells = map;
+        cellStarts = starts;
+        members = sorted;
+        return true;
+    }
+
+    /**
+     * Given the position of a feature, retrieves the positions of its
+     * neighbors among the features of its cell and the cells around it. The
+     * distance is computed as the euclidean distance does.
+     *
+     * @param i         the position of the feature whose neighbors are being
+     *                  retrieved.
+     * @param features  the features that can be neighbors of feature.
+     * @param neighbors an array where the positions of the neighbors are
+     *                  written, in ascending order.
+     * @return the number of neighbors.
+     */
+    @Override
+    int getNeighbors(int i, List<Clusterable> features, int[] neighbors) throws ParameterNotFoundException {
+        if (cells == null) {
+            return super.getNeighbors(i, features, neighbors);
+        }
+
+        Clusterable feature = features.get(i);
+        int count = 0;
+        for (int column = columns[i] - 1; column <= columns[i] + 1; column++) {
+            for (int row = rows[i] - 1; row <= rows[i] + 1; row++) {
+                int cell = cells.get(key(column, row));
+                if (cell == LongIntHashMap.MISSING) {
+                    continue;
+                }
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    int candidate = members[k];
+                    double dx = xs[candidate] - xs[i];
+                    double dy = ys[candidate] - ys[i];
+                    if (candidate != i && Math.sqrt(dx * dx + dy * dy) <= eps
+                            && features.get(candidate).isComparableWith(feature)) {
+                        neighbors[count++] = candidate;
+                    }
+                }
+            }
+        }
+
+        /* Keeps the order of the feature list, as a linear scan would do */
+        Arrays.sort(neighbors, 0, count);
+        return count;
+    }
+
+    /**
+     * Packs the column and row of a cell into a key.
+     */
+    private static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,467 @@
+package es.unizar.iaaa.ml.clustering;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A DBSCAN clusterer that keeps its features, their number of neighbors, their
+ * clusters and a spatial index of them, so that new features can be inserted
+ * in batches without clustering every feature again. Only the new features,
+ * and the old features that become core features, are queried for their
+ * neighbors.
+ *
+ * As features are never removed, core features never stop being core, so
+ * clusters can only be created, grow, or merge with other clusters. Every
+ * cluster has an id, and when clusters merge, the lowest id is kept. A border
+ * feature stays in the cluster it joined first, unless it becomes a core
+ * feature. Clustering a whole list at once gives the same clusters as
+ * DBSCANClusterer, in the same order.
+ *
+ * The spatial index is only valid for distance measures that are never smaller
+ * than the gap between the envelopes of the features, like the euclidean and
+ * hausdorff distances.
+ *
+ * @author Javier Beltran
+ */
+public class IncrementalDBSCANClusterer extends DBSCANClusterer {
+
+    private List<Clusterable> features;
+    private List<Envelope> envelopes;
+    private Quadtree tree;
+    private int[] unindexed;
+    private int unindexedCount;
+    private int[] counts;
+    private boolean[] core;
+    private int[] ids;
+    private DisjointSets clusters;
+
+    protected IncrementalDBSCANClusterer(double eps, int minPts, DistanceMeasure distance, ClusterBuilder builder,
+            Parameter... params) {
+        super(eps, minPts, distance, builder, params);
+        reset();
+    }
+
+    /**
+     * Given the entry features, discards the features inserted before and
+     * returns a list of feature collections, each representing a cluster.
+     *
+     * @param features a list of features to be clusterized
+     * @return a list of clusters (feature collections).
+     */
+    @Override
+    public List<Cluster> cluster(List<Clusterable> features) throws ParameterNotFoundException {
+        reset();
+        update(features, false);
+        return getClusters();
+    }
+
+    /**
+     * Discards every feature inserted before.
+     */
+    public void reset() {
+        features = new ArrayList<>();
+        envelopes = new ArrayList<>();
+        tree = new Quadtree();
+        unindexed = new int[0];
+        unindexedCount = 0;
+        counts = new int[16];
+        core = new boolean[16];
+        ids = new int[16];
+        clusters = new DisjointSets(0);
+    }
+
+    /**
+     * Inserts a batch of features, and updates the clusters that they affect.
+     *
+     * @param batch the new features.
+     * @return the clusters that were created, grew or merged, by their id.
+     */
+    public List<Change> insert(List<Clusterable> batch) throws ParameterNotFoundException {
+        return update(batch, true);
+    }
+
+    /**
+     * Inserts a batch of features, and updates the clusters that they affect.
+     *
+     * @param batch    the new features.
+     * @param describe whether the changes to the clusters are described.
+     * @return the changes to the clusters, or null if they are not described.
+     */
+    private List<Change> update(List<Clusterable> batch, boolean describe) throws ParameterNotFoundException {
+        bindDistance();
+        int first = features.size();
+        int firstId = clusters.size();
+        add(batch);
+
+        /* Counts the neighbors of the new features, and of their old neighbors */
+        int[][] newNeighbors = new int[batch.size()][];
+        IntList promoted = new IntList();
+        for (int p = first; p < features.size(); p++) {
+            int[] neighbors = getNeighbors(p);
+            newNeighbors[p - first] = neighbors;
+            counts[p] = neighbors.length;
+            for (int q : neighbors) {
+                if (q < first && ++counts[q] == minPts && !core[q]) {
+                    promoted.add(q);
+                }
+            }
+        }
+        for (int p = first; p < features.size(); p++) {
+            if (counts[p] >= minPts) {
+                promoted.add(p);
+            }
+        }
+        promoted.sort();
+
+        /* Every feature that becomes core keeps its cluster, or starts one */
+        IntList joined = new IntList();
+        for (int k = 0; k < promoted.size(); k++) {
+            int c = promoted.get(k);
+            core[c] = true;
+            if (ids[c] == NOISE) {
+                ids[c] = clusters.add();
+                clusters.addMember(ids[c], c);
+                joined.add(c);
+            }
+        }
+
+        /* Merges the new core features with their core neighbors */
+        IntList touched = new IntList();
+        IntList borders = new IntList();
+        for (int k = 0; k < promoted.size(); k++) {
+            int c = promoted.get(k);
+            int[] neighbors = c >= first ? newNeighbors[c - first] : getNeighbors(c);
+            touch(ids[c], firstId, touched);
+            for (int q : neighbors) {
+                if (core[q]) {
+                    touch(ids[q], firstId, touched);
+                    clusters.union(ids[c], ids[q]);
+                } else if (ids[q] == NOISE) {
+                    borders.add(q);
+                }
+            }
+        }
+        for (int p = first; p < features.size(); p++) {
+            if (!core[p]) {
+                borders.add(p);
+            }
+        }
+
+        /* Features that were noise join the first cluster they are next to */
+        borders.sortDistinct();
+        for (int k = 0; k < borders.size(); k++) {
+            int b = borders.get(k);
+            int[] neighbors = b >= first ? newNeighbors[b - first] : getNeighbors(b);
+            int id = NOISE;
+            for (int q : neighbors) {
+                if (core[q] && (id == NOISE || clusters.find(ids[q]) < id)) {
+                    id = clusters.find(ids[q]);
+                }
+            }
+            if (id != NOISE) {
+                ids[b] = id;
+                clusters.addMember(id, b);
+                touch(id, firstId, touched);
+                joined.add(b);
+            }
+        }
+
+        if (!describe) {
+            return null;
+        }
+        touched.sortDistinct();
+        joined.sort();
+        return changes(touched, joined);
+    }
+
+    /**
+     * Retrieves the clusters of every feature inserted so far, in the order of
+     * their ids.
+     *
+     * @return a list of clusters (feature collections).
+     */
+    public List<Cluster> getClusters() {
+        int[] numbers = new int[clusters.size()];
+        Arrays.fill(numbers, NOISE);
+        for (int id = 0, n = 0; id < numbers.length; id++) {
+            if (clusters.find(id) == id) {
+                numbers[id] = n++;
+            }
+        }
+
+        int[] labels = new int[features.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = ids[i] == NOISE ? NOISE : numbers[clusters.find(ids[i])];
+        }
+        return toClusters(features, labels);
+    }
+
+    /**
+     * Retrieves the id of the cluster of a feature.
+     *
+     * @param position the position of the feature, in the order of insertion.
+     * @return the id of its cluster, or -1 if it is noise.
+     */
+    public int getClusterId(int position) {
+        return ids[position] == NOISE ? NOISE : clusters.find(ids[position]);
+    }
+
+    /**
+     * Records the cluster of an id as touched by this batch, if it existed
+     * before.
+     */
+    private void touch(int id, int firstId, IntList touched) {
+        int root = clusters.find(id);
+        if (root < firstId) {
+            touched.add(root);
+        }
+    }
+
+    /**
+     * Describes the clusters that were created, grew or merged in a batch.
+     * Only the clusters touched by the batch are visited.
+     *
+     * @param touched the distinct clusters existing before this batch that
+     *                were touched by it, in ascending order.
+     * @param joined  the features that joined a cluster in this batch, in
+     *                ascending order.
+     * @return the changes, in the order of the ids of the clusters.
+     */
+    private List<Change> changes(IntList touched, IntList joined) {
+        Map<Integer, Change> changes = new TreeMap<>();
+        for (int k = 0; k < touched.size(); k++) {
+            int id = touched.get(k);
+            change(changes, clusters.find(id)).merged.add(id);
+        }
+        for (int k = 0; k < joined.size(); k++) {
+            int p = joined.get(k);
+            change(changes, clusters.find(ids[p])).added.add(features.get(p));
+        }
+
+        /* A cluster that only gained core features it already had is unchanged */
+        List<Change> result = new ArrayList<>();
+        for (Change change : changes.values()) {
+            if (change.merged.size() != 1 || !change.added.isEmpty()) {
+                int[] members = clusters.members(change.id);
+                List<Clusterable> list = new ArrayList<>(members.length);
+                for (int member : members) {
+                    list.add(features.get(member));
+                }
+                change.cluster = builder.create(list);
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    private static Change change(Map<Integer, Change> changes, int id) {
+        Change change = changes.get(id);
+        if (change == null) {
+            change = new Change(id);
+            changes.put(id, change);
+        }
+        return change;
+    }
+
+    /**
+     * Appends some features, growing the arrays of their state and indexing
+     * them by their envelopes.
+     */
+    private void add(List<Clusterable> batch) {
+        int size = features.size() + batch.size();
+        if (size > counts.length) {
+            int capacity = Math.max(size, 2 * counts.length);
+            counts = Arrays.copyOf(counts, capacity);
+            core = Arrays.copyOf(core, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        for (Clusterable feature : batch) {
+            int i = features.size();
+            features.add(feature);
+            ids[i] = NOISE;
+            Envelope envelope = NeighborIndex.envelope(feature);
+            envelopes.add(envelope);
+            if (envelope != null) {
+                tree.insert(envelope, i);
+            } else {
+                if (unindexedCount == unindexed.length) {
+                    unindexed = Arrays.copyOf(unindexed, Math.max(16, 2 * unindexedCount));
+                }
+                unindexed[unindexedCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * Given the position of a feature, retrieves the positions of its
+     * neighbors among every feature inserted so far.
+     *
+     * @param i the position of the feature.
+     * @return the positions of its neighbors.
+     */
+    private int[] getNeighbors(int i) throws ParameterNotFoundException {
+        Envelope envelope = envelopes.get(i);
+        int[] neighbors;
+        int count = 0;
+        if (envelope == null) {
+            neighbors = new int[features.size()];
+            for (int candidate = 0; candidate < features.size(); candidate++) {
+                if (isNeighbor(i, candidate, features)) {
+                    neighbors[count++] = candidate;
+                }
+            }
+        } else {
+            /* The quadtree returns the items of whole nodes, so their envelopes are checked */
+            Envelope query = NeighborIndex.expand(envelope, eps);
+            List<?> items = tree.query(query);
+            neighbors = new int[items.size() + unindexedCount];
+            for (Object item : items) {
+                int candidate = (Integer) item;
+                if (query.intersects(envelopes.get(candidate)) && isNeighbor(i, candidate, features)) {
+                    neighbors[count++] = candidate;
+                }
+            }
+            for (int k = 0; k < unindexedCount; k++) {
+                int candidate = unindexed[k];
+                if (isNeighbor(i, candidate, features)) {
+                    neighbors[count++] = candidate;
+                }
+            }
+        }
+        return Arrays.copyOf(neighbors, count);
+    }
+
+    /**
+     * A change made by a batch to a cluster: it was created, it grew, or it
+     * merged other clusters.
+     */
+    public static class Change {
+
+        /**
+         * The kinds of changes. A cluster is CREATED if it only has features
+         * that were not in any cluster before, it is GROWN if it kept a single
+         * cluster of before, and it MERGED if it joined several of them.
+         */
+        public enum Type {
+            CREATED, GROWN, MERGED
+        }
+
+        private final int id;
+        private final List<Integer> merged = new ArrayList<>();
+        private final List<Clusterable> added = new ArrayList<>();
+        private Cluster cluster;
+
+        Change(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Retrieves the kind of change.
+         *
+         * @return the type of the change.
+         */
+        public Type getType() {
+            return merged.isEmpty() ? Type.CREATED : merged.size() == 1 ? Type.GROWN : Type.MERGED;
+        }
+
+        /**
+         * Retrieves the id of the cluster after the change.
+         *
+         * @return the id of the cluster.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Retrieves the ids of the clusters of before that are part of this
+         * cluster now, in ascending order. The first one is the id of this
+         * cluster, unless it was created.
+         *
+         * @return the ids of the previous clusters.
+         */
+        public List<Integer> getMerged() {
+            return Collections.unmodifiableList(merged);
+        }
+
+        /**
+         * Retrieves the features that joined this cluster, and were not part
+         * of any cluster before.
+         *
+         * @return the added features, in the order of insertion.
+         */
+        public List<Clusterable> getAdded() {
+            return Collections.unmodifiableList(added);
+        }
+
+        /**
+         * Retrieves every feature of the cluster after the change.
+         *
+         * @return the cluster, whose features are in no particular order.
+         */
+        public Cluster getCluster() {
+            return cluster;
+        }
+    }
+
+    /**
+     * A growable list of ints kept in a primitive array, for the positions and
+     * ids handled by a batch.
+     */
+    private static class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int get(int k) {
+            return values[k];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sorts the values in ascending order.
+         */
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        /**
+         * Sorts the values in ascending order, and removes the repeated ones.
+         */
+        void sortDistinct() {
+            sort();
+            int distinct = 0;
+            for (int k = 0; k < size; k++) {
+                if (distinct == 0 || values[k] != values[distinct - 1]) {
+                    values[distinct++] = values[k];
+                }
+            }
+            size = distinct;
+        }
+    }
+
+}
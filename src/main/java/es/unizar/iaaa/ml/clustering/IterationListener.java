@@ -0,0 +1,20 @@
+package es.unizar.iaaa.ml.clustering;
+
+/**
+ * An iteration listener is notified at the end of every iteration of an
+ * iterative clustering algorithm, and may stop it before it converges.
+ * 
+ * @author Javier Beltran
+ */
+public interface IterationListener {
+
+	/**
+	 * Notifies that an iteration has finished.
+	 * 
+	 * @param iteration the number of iterations performed so far, from 1.
+	 * @param shift the largest distance that a centroid has moved in it.
+	 * @return true, to go on with the next iteration; false, to stop.
+	 */
+	boolean iterationFinished(int iteration, double shift);
+
+}
@@ -2,15 +2,17 @@ package es.unizar.iaaa.ml.clustering;
 
 import org.geotools.feature.SchemaException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import es.unizar.iaaa.ml.adapter.Cluster;
 import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
 import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
 
@@ -18,20 +20,58 @@ import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
  * Basic implementation of K-Means algorithm. The centroid initialization step
  * is performed by randomly selecting features from the set.
  * 
+ * The assignment step can be run in parallel, splitting the features into
+ * chunks that are processed by a fork-join pool. Every feature is assigned on
+ * its own, so the result does not depend on the number of threads.
+ * 
+ * Cluster membership is kept as an array holding, for the feature at every
+ * position of the input list, the position of its centroid.
+ * 
+ * The assignment step can also be accelerated with the bounds proposed by
+ * Hamerly: an upper bound of the distance from every feature to its centroid
+ * and a lower bound of the distance to any other centroid. Thanks to the
+ * triangle inequality, the distances to the centroids are only computed when
+ * the bounds cannot prove that the feature keeps its centroid. This requires
+ * the distance measure to be a metric, like the euclidean or the hausdorff
+ * distances, and gives the same clusters as the basic algorithm.
+ * 
+ * By default, the algorithm iterates until no centroid moves. It can also stop
+ * when no centroid moves more than a tolerance, after a maximum number of
+ * iterations, or when an iteration listener asks for it. In those cases, the
+ * clusters are those of the last assignment step.
+ * 
  * @author Javier Beltran
  */
 public class KMeansClusterer extends FeatureClusterer {
 
 	protected int k;
-	protected Map<Clusterable, Clusterable> clusters;
 	protected List<Clusterable> centroids;
 	protected ClusterBuilder builder;
+	protected int[] assignment;
+	private int parallelism = 1;
+	
+	/* Pool of the running execution, or null when it is sequential */
+	protected ForkJoinPool pool;
+	
+	/* Relative margin that absorbs rounding errors when comparing bounds */
+	private static final double BOUND_MARGIN = 1e-9;
+	
+	private boolean accelerated;
+	private boolean bounded;
+	private double[] upper;
+	private double[] lower;
+	private double[] halfSeparation;
+	
+	private double tolerance = 0;
+	private int maxIterations = Integer.MAX_VALUE;
+	private IterationListener listener;
+	private int iterations;
+	private double cost;
 	
 	protected KMeansClusterer(int k, DistanceMeasure distance, ClusterBuilder builder, Parameter[] params) {
 		super(distance, builder, params);
 		
 		this.k = k;
-		clusters = new HashMap<>(k);
 		centroids = new ArrayList<>(k);
 		this.builder = builder;
 	}
@@ -45,11 +85,111 @@ public class KMeansClusterer extends FeatureClusterer {
 	 */
 	public List<Cluster> cluster(List<Clusterable> features)
 			throws ParameterNotFoundException, SchemaException {
-		initializeCentroids(new ArrayList<>(features));
-		iterateClusters(features);
+		bindDistance();
+		resetRandom();
+		assignment = new int[features.size()];
+		centroids = new ArrayList<>(k);
+		pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		bounded = false;
+		if (accelerated) {
+			upper = new double[features.size()];
+			lower = new double[features.size()];
+		}
+		try {
+			initializeCentroids(new ArrayList<>(features));
+			iterateClusters(features);
+			cost = cost(features);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+				pool = null;
+			}
+			upper = null;
+			lower = null;
+			halfSeparation = null;
+		}
 		
 		return toCollections(features);
 	}
+	
+	/**
+	 * Enables or disables the acceleration of the assignment step with
+	 * triangle inequality bounds. The distance measure must be a metric.
+	 * 
+	 * @param accelerated true, to skip the distances ruled out by the bounds.
+	 */
+	public void setAccelerated(boolean accelerated) {
+		this.accelerated = accelerated;
+	}
+	
+	/**
+	 * Sets the largest distance that a centroid can move in an iteration for
+	 * the algorithm to be considered converged. With a tolerance of zero, it
+	 * iterates until no centroid moves.
+	 * 
+	 * @param tolerance the largest centroid shift at convergence.
+	 */
+	public void setTolerance(double tolerance) {
+		if (!(tolerance >= 0)) {
+			throw new IllegalArgumentException("Tolerance must be non-negative");
+		}
+		this.tolerance = tolerance;
+	}
+	
+	/**
+	 * Sets the maximum number of iterations, so the algorithm stops even if
+	 * the centroids have not converged.
+	 * 
+	 * @param maxIterations the maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		if (maxIterations < 1) {
+			throw new IllegalArgumentException("Max iterations must be at least 1");
+		}
+		this.maxIterations = maxIterations;
+	}
+	
+	/**
+	 * Sets a listener that is notified at the end of every iteration and may
+	 * stop the algorithm.
+	 * 
+	 * @param listener the iteration listener, or null to remove it.
+	 */
+	public void setIterationListener(IterationListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Retrieves the number of iterations performed by the last execution.
+	 * 
+	 * @return the number of iterations.
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Retrieves the cost of the clusters of the last execution, that is, the
+	 * sum of the squared distances from every feature to its centroid.
+	 * 
+	 * @return the within-cluster sum of squared distances.
+	 */
+	public double getCost() {
+		return cost;
+	}
+	
+	/**
+	 * Sets the number of threads used in the assignment step. With a single
+	 * thread, the features are assigned sequentially.
+	 * 
+	 * @param parallelism the number of threads.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
 
 	/**
 	 * Initializes the centroids by assigning them to random features.
@@ -62,7 +202,7 @@ public class KMeansClusterer extends FeatureClusterer {
 		for (int i=0; i<features.size(); i++) {
 			randomList.add(i);
 		}
-		Collections.shuffle(randomList);
+		Collections.shuffle(randomList, random);
 
 		/* Selects random features as centroids */
 		for (int i=0; i<k; i++) {
@@ -72,45 +212,71 @@ public class KMeansClusterer extends FeatureClusterer {
 	
 	/**
 	 * Performs the typical two steps of k-means algorithm (assigning features
-	 * to a clusters and reassigning centroids) repeatedly, until no centroids
-	 * change.
+	 * to a clusters and reassigning centroids) repeatedly, until the centroids
+	 * converge or a stop condition is met.
 	 * 
 	 * @param features the list of features to be clusterized
 	 */
 	private void iterateClusters(List<Clusterable> features)
 			throws ParameterNotFoundException, SchemaException {
+		iterations = 0;
 		boolean stop = false;
 		while (!stop) {
 			/* Assigns features to clusters and recalculates the centroids */
 			assignClusters(features);
 			List<Clusterable> newCentroids = reassignCentroids(features);
+			iterations++;
+			
+			/* Checks if centroids have moved more than the tolerance */
+			double[] drift = drifts(newCentroids);
+			double shift = 0;
+			for (double d : drift) {
+				if (!(d <= shift)) {
+					shift = d;
+				}
+			}
+			boolean proceed = listener == null || listener.iterationFinished(iterations, shift);
+			stop = shift <= tolerance || iterations >= maxIterations || !proceed;
 			
-			/* Checks if centroids have changed so the algorithm ends */
-			if (centroidsChanged(newCentroids)) {
+			/* Keeps the centroids of the last assignment when stopping */
+			if (!stop) {
+				if (accelerated) {
+					updateBounds(drift);
+				}
 				centroids = newCentroids;
-			} else {
-				stop = true;
 			}
 		}
 		
 	}
 
 	/**
-	 * Checks if the present centroids and the new calculated centroids are the
-	 * same or not.
+	 * Computes the sum of the squared distances from every feature to the
+	 * centroid it is assigned to.
+	 * 
+	 * @param features the list of features
+	 * @return the within-cluster sum of squared distances
+	 */
+	private double cost(List<Clusterable> features) throws ParameterNotFoundException {
+		double sum = 0;
+		for (int i=0; i<features.size(); i++) {
+			double d = boundDistance.distance(features.get(i), centroids.get(assignment[i]), params);
+			sum += d * d;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Computes the distance that every centroid has moved.
 	 * 
 	 * @param newCentroids the list of new centroids
-	 * @return true, if newCentroids!=centroids; false, otherwise
-	 */
-	private boolean centroidsChanged(List<Clusterable> newCentroids) throws ParameterNotFoundException {
-		boolean changed = false;
-		for (int i=0; i<newCentroids.size() && !changed; i++) {
-			/* Checks if distance between new and old centroids is zero */
-			if (distance.distance(newCentroids.get(i), centroids.get(i), params) != 0) {
-				changed = true;
-			}
+	 * @return the distance between every new centroid and the present one
+	 */
+	private double[] drifts(List<Clusterable> newCentroids) throws ParameterNotFoundException {
+		double[] drift = new double[centroids.size()];
+		for (int i=0; i<drift.length; i++) {
+			drift[i] = boundDistance.distance(newCentroids.get(i), centroids.get(i), params);
 		}
-		return changed;
+		return drift;
 	}
 
 	/**
@@ -120,45 +286,141 @@ public class KMeansClusterer extends FeatureClusterer {
 	 * @param features the list of features
 	 */
 	private void assignClusters(List<Clusterable> features) throws ParameterNotFoundException {
- 		for (Clusterable feature : features) {
+		if (accelerated) {
+			halfSeparation = halfSeparation();
+		}
+		if (pool == null) {
+			assignRange(features, 0, features.size());
+		} else {
+			try {
+				pool.invoke(new AssignTask(features, 0, features.size(),
+						Math.max(1, features.size() / (parallelism * 8))));
+			} catch (UncheckedParameterException e) {
+				throw e.getCause();
+			}
+		}
+		bounded = accelerated;
+	}
+	
+	/**
+	 * Assigns the features in a range of positions to their nearest centroids.
+	 * 
+	 * @param features the list of features
+	 * @param from the first position, inclusive
+	 * @param to the last position, exclusive
+	 */
+	private void assignRange(List<Clusterable> features, int from, int to)
+			throws ParameterNotFoundException {
+		for (int j=from; j<to; j++) {
+			Clusterable feature = features.get(j);
+			int current = -1;
+			
+			/* Skips the feature if the bounds prove that its centroid is kept */
+			if (bounded) {
+				current = assignment[j];
+				double bound = Math.max(halfSeparation[current], lower[j]);
+				if (upper[j] * (1 + BOUND_MARGIN) < bound) {
+					continue;
+				}
+				upper[j] = boundDistance.distance(feature, centroids.get(current), params);
+				if (upper[j] * (1 + BOUND_MARGIN) < bound) {
+					continue;
+				}
+			}
+			
 			int minIndex = 0;
 			double minDistance = Double.POSITIVE_INFINITY;
+			double secondDistance = Double.POSITIVE_INFINITY;
 			
-			/* Selects the least-distant centroid from each feature */
+			/* Selects the least-distant centroid from each feature. Only the
+			 * distances that can beat the nearest ones, or the second nearest
+			 * for the bounds, are computed in full, and the distance to the
+			 * present centroid is not computed again */
 			for (int i=0; i<centroids.size(); i++) {
-				double d = distance.distance(feature, centroids.get(i), params);
+				double limit = accelerated ? secondDistance : minDistance;
+				double d = i == current ? upper[j]
+						: DistanceMeasureBuilder.distanceUpTo(boundDistance, feature, centroids.get(i), limit, params);
 				if (d < minDistance) {
+					secondDistance = minDistance;
 					minDistance = d;
 					minIndex = i;
+				} else if (d < secondDistance) {
+					secondDistance = d;
 				}
 			}
 			
-			clusters.put(feature, centroids.get(minIndex));
+			assignment[j] = minIndex;
+			if (accelerated) {
+				upper[j] = minDistance;
+				lower[j] = secondDistance;
+			}
+		}
+	}
+	
+	/**
+	 * Computes, for every centroid, half the distance to its nearest centroid.
+	 * No feature closer than that to a centroid can be nearer to another one.
+	 * 
+	 * @return the half distances to the nearest centroid
+	 */
+	private double[] halfSeparation() throws ParameterNotFoundException {
+		double[] separation = new double[centroids.size()];
+		Arrays.fill(separation, Double.POSITIVE_INFINITY);
+		for (int i=0; i<centroids.size(); i++) {
+			for (int j=i+1; j<centroids.size(); j++) {
+				double d = boundDistance.distance(centroids.get(i), centroids.get(j), params);
+				separation[i] = Math.min(separation[i], d);
+				separation[j] = Math.min(separation[j], d);
+			}
+		}
+		for (int i=0; i<separation.length; i++) {
+			separation[i] /= 2;
+		}
+		return separation;
+	}
+	
+	/**
+	 * Moves the bounds of every feature by the distance that the centroids
+	 * have moved, so they remain valid for the new centroids.
+	 * 
+	 * @param drift the distance that every centroid has moved
+	 */
+	private void updateBounds(double[] drift) {
+		int maxIndex = 0;
+		double maxDrift = 0;
+		double secondDrift = 0;
+		for (int i=0; i<drift.length; i++) {
+			if (!(drift[i] <= maxDrift)) {
+				secondDrift = maxDrift;
+				maxDrift = drift[i];
+				maxIndex = i;
+			} else if (!(drift[i] <= secondDrift)) {
+				secondDrift = drift[i];
+			}
+		}
+		
+		/* Lower bounds move by the largest drift of any other centroid */
+		for (int j=0; j<assignment.length; j++) {
+			upper[j] += drift[assignment[j]];
+			lower[j] -= assignment[j] == maxIndex ? secondDrift : maxDrift;
 		}
 	}
 	
 	/**
-	 * Given a mapping of every feature to its assigned centroid, calculates the
-	 * new centroid of that cluster.
+	 * Given the assignment of every feature to a centroid, calculates the new
+	 * centroid of that cluster. A centroid with no features assigned is kept.
 	 * 
 	 * @param features the list of features
 	 * @return the list of new centroids
 	 */
 	private List<Clusterable> reassignCentroids(List<Clusterable> features) throws SchemaException {
-		List<Clusterable> newCentroids = new ArrayList<>();
+		List<Clusterable> newCentroids = new ArrayList<>(centroids.size());
 		
-		/* Creates cluster objects */
-		List<List<Clusterable>> lists = new ArrayList<>(k);
-		for (int i=0; i<k; i++) {
-			lists.add(new ArrayList<Clusterable>());
-		}
-		for (Clusterable feature : features) {
-			lists.get(centroids.indexOf(clusters.get(feature))).add(feature);
-		}
-		
-		/* Calculates the centroid of every created cluster */
-		for (List<Clusterable> l : lists) {
-			newCentroids.add(builder.create(l).getCentroid());
+		/* Calculates the centroid of every cluster */
+		List<List<Clusterable>> lists = groupByCentroid(features);
+		for (int i=0; i<lists.size(); i++) {
+			List<Clusterable> l = lists.get(i);
+			newCentroids.add(l.isEmpty() ? centroids.get(i) : builder.create(l).getCentroid());
 		}
 		
 		return newCentroids;
@@ -172,23 +434,74 @@ public class KMeansClusterer extends FeatureClusterer {
 	 * @return a list of feature collections
 	 */
 	private List<Cluster> toCollections(List<Clusterable> features) {
-		List<List<Clusterable>> lists = new ArrayList<>();
-		List<Cluster> collections = new ArrayList<>();
+		List<Cluster> collections = new ArrayList<>(centroids.size());
 		
-		/* Creates a list with every cluster components */
-		for (int i=0; i<k; i++) {
-			lists.add(new ArrayList<Clusterable>());
+		/* Creates a cluster with every list of components */
+		for (List<Clusterable> l : groupByCentroid(features)) {
+			collections.add(builder.create(l));
 		}
-		for (Clusterable feature : features) {
-			lists.get(centroids.indexOf(clusters.get(feature))).add(feature);
+		
+		return collections;
+	}
+	
+	/**
+	 * Splits the features into one list per centroid, following the present
+	 * assignment. Every list is sized beforehand to its exact length.
+	 * 
+	 * @param features the list of features
+	 * @return a list with the components of every cluster
+	 */
+	private List<List<Clusterable>> groupByCentroid(List<Clusterable> features) {
+		int[] sizes = new int[centroids.size()];
+		for (int i=0; i<features.size(); i++) {
+			sizes[assignment[i]]++;
 		}
 		
-		/* Creates a cluster with every created list */
-		for (List<Clusterable> l : lists) {
-			collections.add(builder.create(l));
+		List<List<Clusterable>> lists = new ArrayList<>(sizes.length);
+		for (int size : sizes) {
+			lists.add(new ArrayList<Clusterable>(size));
+		}
+		for (int i=0; i<features.size(); i++) {
+			lists.get(assignment[i]).add(features.get(i));
 		}
 		
-		return collections;
+		return lists;
+	}
+	
+	/**
+	 * A fork-join task that assigns a range of features, splitting it in
+	 * halves until it is small enough to be processed sequentially.
+	 */
+	private class AssignTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Clusterable> features;
+		private final int from;
+		private final int to;
+		private final int threshold;
+		
+		AssignTask(List<Clusterable> features, int from, int to, int threshold) {
+			this.features = features;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				try {
+					assignRange(features, from, to);
+				} catch (ParameterNotFoundException e) {
+					throw new UncheckedParameterException(e);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new AssignTask(features, from, middle, threshold),
+						new AssignTask(features, middle, to, threshold));
+			}
+		}
 	}
 	
 }
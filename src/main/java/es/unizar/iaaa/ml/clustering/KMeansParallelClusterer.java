@@ -0,0 +1,303 @@
+package es.unizar.iaaa.ml.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * Implementation of K-Means with the k-means|| initialization proposed by
+ * Bahmani et al. Instead of the k sequential passes of K-Means++, a few rounds
+ * sample many candidates at once: every feature is drawn independently, with a
+ * probability proportional to its squared distance to the nearest candidate.
+ * Every candidate is then weighted by the number of features nearest to it,
+ * and the centroids are selected among the candidates as K-Means++ does,
+ * taking the weights into account.
+ *
+ * The distances of every round are computed in the pool of the clusterer, so
+ * they are spread across threads when its parallelism is greater than one.
+ * Random draws are always made sequentially, so the selected centroids do not
+ * depend on the number of threads.
+ *
+ * Features at an infinite distance from every candidate, like those without a
+ * geometry, cannot be weighted, so they are always sampled, and are left out
+ * of the cost and of the weights of the candidates.
+ *
+ * @author Javier Beltran
+ */
+public class KMeansParallelClusterer extends KMeansClusterer {
+	
+	/* Default number of sampling rounds */
+	private static final int DEFAULT_ROUNDS = 2;
+	
+	private double oversampling;
+	private int rounds = DEFAULT_ROUNDS;
+	
+	protected KMeansParallelClusterer(int k, DistanceMeasure distance, ClusterBuilder builder,
+			Parameter[] params) {
+		super(k, distance, builder, params);
+	}
+	
+	/**
+	 * Sets the number of candidates expected to be sampled in every round. By
+	 * default, it is twice the number of clusters.
+	 *
+	 * @param oversampling the expected number of candidates per round.
+	 */
+	public void setOversampling(double oversampling) {
+		if (!(oversampling > 0)) {
+			throw new IllegalArgumentException("Oversampling must be positive");
+		}
+		this.oversampling = oversampling;
+	}
+	
+	/**
+	 * Sets the number of sampling rounds. By default, there are 2 rounds.
+	 *
+	 * @param rounds the number of rounds.
+	 */
+	public void setRounds(int rounds) {
+		if (rounds < 1) {
+			throw new IllegalArgumentException("Rounds must be at least 1");
+		}
+		this.rounds = rounds;
+	}
+	
+	/**
+	 * Centroids are selected among candidates oversampled in a few rounds, that
+	 * are reclustered as K-Means++ does.
+	 *
+	 * @param features the list of features.
+	 */
+	@Override
+	protected void initializeCentroids(List<Clusterable> features) throws ParameterNotFoundException {
+		if (k > features.size()) {
+			throw new IllegalArgumentException("There are less features than clusters");
+		}
+		double expected = oversampling > 0 ? oversampling : 2.0 * k;
+		double[] minDistances = new double[features.size()];
+		int[] nearest = new int[features.size()];
+		boolean[] selected = new boolean[features.size()];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		List<Clusterable> candidates = new ArrayList<>();
+		
+		/* First candidate is selected randomly */
+		int index = random.nextInt(features.size());
+		selected[index] = true;
+		addCandidates(features, candidates, Collections.singletonList(features.get(index)),
+				minDistances, nearest);
+		double cost = cost(minDistances);
+		
+		/* Every round samples about the expected number of candidates */
+		for (int r=0; r<rounds && cost > 0; r++) {
+			List<Clusterable> sampled = new ArrayList<>();
+			for (int i=0; i<features.size(); i++) {
+				double weight = minDistances[i] * minDistances[i];
+				if (!selected[i] && (weight == Double.POSITIVE_INFINITY
+						|| random.nextDouble() * cost < expected * weight)) {
+					selected[i] = true;
+					sampled.add(features.get(i));
+				}
+			}
+			addCandidates(features, candidates, sampled, minDistances, nearest);
+			cost = cost(minDistances);
+		}
+		
+		/* Too few candidates were sampled, the rest are taken in order */
+		if (candidates.size() < k) {
+			List<Clusterable> missing = new ArrayList<>();
+			for (int i=random.nextInt(features.size()); candidates.size() + missing.size() < k;
+					i = (i + 1) % features.size()) {
+				if (!selected[i]) {
+					selected[i] = true;
+					missing.add(features.get(i));
+				}
+			}
+			addCandidates(features, candidates, missing, minDistances, nearest);
+		}
+		
+		/* Every candidate weighs as many features as are nearest to it */
+		double[] weights = new double[candidates.size()];
+		for (int i=0; i<nearest.length; i++) {
+			if (minDistances[i] < Double.POSITIVE_INFINITY) {
+				weights[nearest[i]]++;
+			}
+		}
+		recluster(candidates, weights);
+	}
+	
+	/**
+	 * Selects the centroids among the weighted candidates, as K-Means++ does.
+	 * The odds of a candidate are proportional to its weight times its squared
+	 * distance to the nearest centroid, and candidates at an infinite distance
+	 * are drawn first.
+	 *
+	 * @param candidates the list of candidates
+	 * @param weights the weight of every candidate
+	 */
+	private void recluster(List<Clusterable> candidates, double[] weights)
+			throws ParameterNotFoundException {
+		double[] minDistances = new double[candidates.size()];
+		int[] nearest = new int[candidates.size()];
+		double[] odds = new double[candidates.size()];
+		double[] cumulative = new double[candidates.size()];
+		boolean[] selected = new boolean[candidates.size()];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		List<Clusterable> chosen = new ArrayList<>(k);
+		
+		/* First centroid is selected according to the weights only */
+		int index = KMeansPlusPlusClusterer.draw(weights, selected, cumulative, random);
+		for (int i=0; i<k; i++) {
+			selected[index] = true;
+			centroids.add(candidates.get(index));
+			if (i == k - 1) {
+				break;
+			}
+			
+			addCandidates(candidates, chosen, Collections.singletonList(candidates.get(index)),
+					minDistances, nearest);
+			for (int j=0; j<minDistances.length; j++) {
+				odds[j] = minDistances[j] == Double.POSITIVE_INFINITY ? Double.POSITIVE_INFINITY
+						: weights[j] * minDistances[j] * minDistances[j];
+			}
+			index = KMeansPlusPlusClusterer.draw(odds, selected, cumulative, random);
+		}
+	}
+	
+	/**
+	 * Adds some candidates, and updates the distance from every feature to its
+	 * nearest candidate with them.
+	 *
+	 * @param features the list of features
+	 * @param candidates the list of candidates, which the new ones are added to
+	 * @param added the new candidates
+	 * @param minDistances the distance from every feature to its nearest
+	 *            candidate, which is updated
+	 * @param nearest the position of the nearest candidate of every feature,
+	 *            which is updated
+	 */
+	private void addCandidates(List<Clusterable> features, List<Clusterable> candidates,
+			List<Clusterable> added, double[] minDistances, int[] nearest)
+			throws ParameterNotFoundException {
+		int offset = candidates.size();
+		candidates.addAll(added);
+		if (added.isEmpty()) {
+			return;
+		}
+		if (pool == null) {
+			updateRange(features, added, offset, minDistances, nearest, 0, features.size());
+		} else {
+			try {
+				pool.invoke(new UpdateTask(features, added, offset, minDistances, nearest,
+						0, features.size(), Math.max(1, features.size() / (pool.getParallelism() * 8))));
+			} catch (UncheckedParameterException e) {
+				throw e.getCause();
+			}
+		}
+	}
+	
+	/**
+	 * Updates the nearest candidate of the features in a range of positions
+	 * with some new candidates.
+	 *
+	 * @param features the list of features
+	 * @param added the new candidates
+	 * @param offset the position of the first new candidate
+	 * @param minDistances the distance from every feature to its nearest
+	 *            candidate, which is updated
+	 * @param nearest the position of the nearest candidate of every feature,
+	 *            which is updated
+	 * @param from the first position, inclusive
+	 * @param to the last position, exclusive
+	 */
+	private void updateRange(List<Clusterable> features, List<Clusterable> added, int offset,
+			double[] minDistances, int[] nearest, int from, int to) throws ParameterNotFoundException {
+		for (int i=from; i<to; i++) {
+			Clusterable feature = features.get(i);
+			for (int j=0; j<added.size(); j++) {
+				/* Only a distance nearer than the present one matters */
+				double d = DistanceMeasureBuilder.distanceUpTo(boundDistance, feature, added.get(j),
+						minDistances[i], params);
+				if (d < minDistances[i]) {
+					minDistances[i] = d;
+					nearest[i] = offset + j;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Sums the squared distances from every feature to its nearest candidate,
+	 * leaving out the infinite ones.
+	 *
+	 * @param minDistances the distance from every feature to its nearest
+	 *            candidate
+	 * @return the sum of the finite squared distances
+	 */
+	private static double cost(double[] minDistances) {
+		double sum = 0;
+		for (double d : minDistances) {
+			if (d < Double.POSITIVE_INFINITY) {
+				sum += d * d;
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * A fork-join task that updates the nearest candidate of a range of
+	 * features, splitting it in halves until it is small enough to be
+	 * processed sequentially.
+	 */
+	private class UpdateTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Clusterable> features;
+		private final List<Clusterable> added;
+		private final int offset;
+		private final double[] minDistances;
+		private final int[] nearest;
+		private final int from;
+		private final int to;
+		private final int threshold;
+		
+		UpdateTask(List<Clusterable> features, List<Clusterable> added, int offset,
+				double[] minDistances, int[] nearest, int from, int to, int threshold) {
+			this.features = features;
+			this.added = added;
+			this.offset = offset;
+			this.minDistances = minDistances;
+			this.nearest = nearest;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				try {
+					updateRange(features, added, offset, minDistances, nearest, from, to);
+				} catch (ParameterNotFoundException e) {
+					throw new UncheckedParameterException(e);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new UpdateTask(features, added, offset, minDistances, nearest,
+								from, middle, threshold),
+						new UpdateTask(features, added, offset, minDistances, nearest,
+								middle, to, threshold));
+			}
+		}
+	}
+	
+}
@@ -1,17 +1,13 @@
 package es.unizar.iaaa.ml.clustering;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
 import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
 
@@ -20,6 +16,14 @@ import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
  * the basic K-Means algorithm, in which initial centroids are selected trying
  * them to be as far from each other as possible.
  * 
+ * Every new centroid is drawn with a probability proportional to the squared
+ * distance from each feature to its nearest centroid. These distances are
+ * kept between rounds and only compared with the last centroid added, so the
+ * seeding computes n distances per centroid.
+ * 
+ * Features at an infinite distance from every centroid, like those without a
+ * geometry, cannot be weighted, so they are drawn first, uniformly.
+ * 
  * @author Javier Beltran
  */
 public class KMeansPlusPlusClusterer extends KMeansClusterer{
@@ -37,93 +41,124 @@ public class KMeansPlusPlusClusterer extends KMeansClusterer{
 	 */
 	@Override
 	protected void initializeCentroids(List<Clusterable> features) throws ParameterNotFoundException {
-		Random random = new Random();
+		if (k > features.size()) {
+			throw new IllegalArgumentException("There are less features than clusters");
+		}
+		double[] minDistances = new double[features.size()];
+		double[] weights = new double[features.size()];
+		double[] cumulative = new double[features.size()];
+		boolean[] selected = new boolean[features.size()];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
 
 		/* First centroid is selected randomly */
 		int index = random.nextInt(features.size());
-		centroids.add(features.get(index));
-		features.remove(index);
-		
-		/* 
-		 * The bigger the distance (SSE) to the rest of the centroids, the more
-		 * odds a feature has to be selected as a new centroid.
-		 */
-		for (int i=1; i<k; i++) {
-			Clusterable selected = selectMostLikelyFeature(features, distancesFrom(features));
-			centroids.add(selected);
-			features.remove(selected);
+		for (int i=0; i<k; i++) {
+			selected[index] = true;
+			centroids.add(features.get(index));
+			if (i == k - 1) {
+				break;
+			}
+			
+			/* 
+			 * The bigger the distance to the nearest centroid, the more odds
+			 * a feature has to be selected as a new centroid.
+			 */
+			updateDistances(features, features.get(index), minDistances, weights);
+			index = draw(weights, selected, cumulative, random);
 		}
 	}
 	
 	/**
-	 * Given a list of features, calculates its distances to the centroids.
+	 * Updates the distance from every feature to its nearest centroid with the
+	 * last centroid added, and their squares.
 	 * 
 	 * @param features the list of features
-	 * @return a list with the distances from every features to the centroids
+	 * @param centroid the last centroid added
+	 * @param minDistances the distance from every feature to its nearest
+	 *            centroid, which is updated
+	 * @param weights the squared distance of every feature, which is filled
 	 */
-	private List<Double> distancesFrom(List<Clusterable> features) throws ParameterNotFoundException {
-		List<Double> distances = new ArrayList<>();
-		double sum = 0;
-		
-		/* Sum of squared distances from every feature to the centroids */
-		for (Clusterable f : features) {
-			double dist = 0;
-			for (Clusterable c : centroids) {
-				dist += Math.pow(distance.distance(f, c, params), 2);
+	private void updateDistances(List<Clusterable> features, Clusterable centroid,
+			double[] minDistances, double[] weights) throws ParameterNotFoundException {
+		for (int i=0; i<features.size(); i++) {
+			/* Only a distance nearer than the present one matters */
+			double d = DistanceMeasureBuilder.distanceUpTo(boundDistance, features.get(i), centroid,
+					minDistances[i], params);
+			if (d < minDistances[i]) {
+				minDistances[i] = d;
 			}
-			sum += dist;
-			distances.add(dist);
-		}
-		
-		/* Normalizes distances so they can be used as a probability */
-		for (int i=0; i<distances.size(); i++) {
-			distances.set(i, distances.get(i) / sum);
+			weights[i] = minDistances[i] * minDistances[i];
 		}
-		
-		return distances;
 	}
 
 	/**
-	 * Given the list of features and its associated list of weights (normalized
-	 * distances), selects a feature as the new centroid. The odds to be chosen
-	 * centroid are proportional to the weight.
+	 * Draws a feature that is not selected yet. If some of them have an
+	 * infinite weight, one of those is drawn uniformly. Otherwise, a feature is
+	 * drawn with a probability proportional to its weight, and if every weight
+	 * is zero, the next feature not selected from a random position is taken.
 	 * 
-	 * @param features the list of features
-	 * @param weights the list of weights (normalized distances)
-	 * @return a new centroid from the feature list
+	 * @param weights the weight of every feature
+	 * @param selected whether every feature is selected already
+	 * @param cumulative an array where the accumulated weights are written
+	 * @param random the random number generator
+	 * @return the position of the drawn feature
 	 */
-	private Clusterable selectMostLikelyFeature(List<Clusterable> features, List<Double> weights) {
-		/* Creates a list of pair (feature - weight) */
-		List<Pair<Clusterable, Double>> relations = new ArrayList<>();
-		for (int i=0; i<features.size(); i++) {
-			relations.add(new ImmutablePair<>(
-					features.get(i), weights.get(i)));
+	static int draw(double[] weights, boolean[] selected, double[] cumulative, Random random) {
+		double sum = 0;
+		int unbounded = 0;
+		for (int i=0; i<weights.length; i++) {
+			if (!selected[i]) {
+				if (weights[i] == Double.POSITIVE_INFINITY) {
+					unbounded++;
+				} else {
+					sum += weights[i];
+				}
+			}
+			cumulative[i] = sum;
 		}
 		
-		/* Sorts the list of pairs in ascending weight */
-		Collections.sort(relations, new Comparator<Pair<Clusterable, Double>>() {
-			@Override
-			public int compare(Pair<Clusterable, Double> o1,
-					Pair<Clusterable, Double> o2) {
-				return (int) (o1.getRight() - o2.getRight());
+		if (unbounded > 0) {
+			int n = random.nextInt(unbounded);
+			for (int i=0; ; i++) {
+				if (!selected[i] && weights[i] == Double.POSITIVE_INFINITY && n-- == 0) {
+					return i;
+				}
 			}
-		});
-		Random random = new Random();
-		double selector = random.nextDouble();
+		} else if (sum > 0) {
+			/* Selected features add nothing, so they cannot be found, as long
+			 * as the value stays below the sum despite rounding */
+			return select(cumulative, Math.min(random.nextDouble() * sum, Math.nextAfter(sum, 0)));
+		}
 		
-		/* Selects a feature to be centroid based on probabilities */
-		int i=0;
-		Clusterable selected = null;
-		double sum = 0;
-		while (selected == null) {
-			sum += relations.get(i).getRight();
-			if (selector < sum) {
-				selected = relations.get(i).getLeft();
+		/* Every feature lies on a centroid, any other one is taken */
+		int index = random.nextInt(weights.length);
+		while (selected[index]) {
+			index = (index + 1) % weights.length;
+		}
+		return index;
+	}
+
+	/**
+	 * Searches the first feature whose accumulated weight exceeds a value, so
+	 * that every feature is found with a probability proportional to its own
+	 * weight.
+	 * 
+	 * @param cumulative the accumulated weights, in ascending order
+	 * @param value a value between 0 and the total weight
+	 * @return the position of the selected feature
+	 */
+	static int select(double[] cumulative, double value) {
+		int lo = 0;
+		int hi = cumulative.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] > value) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
 			}
-			i++;
 		}
-		
-		return selected;
+		return lo;
 	}
 	
 }
@@ -0,0 +1,115 @@
+package es.unizar.iaaa.ml.clustering;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to non-negative int values, kept in primitive
+ * arrays with open addressing, so that neither keys nor values are boxed. It
+ * is used to find the cells of a grid by their coordinates.
+ *
+ * @author Javier Beltran
+ */
+class LongIntHashMap {
+
+    /* Value returned for missing keys, and marker of empty slots */
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int shift;
+
+    LongIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key the key.
+     * @return its value, or MISSING if there is none.
+     */
+    int get(long key) {
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key.
+     * @param value its value, which must be non-negative.
+     * @return the previous value, or MISSING if there was none.
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative");
+        }
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return MISSING;
+    }
+
+    /**
+     * Retrieves the number of keys.
+     *
+     * @return the number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the first slot of a key, mixing its bits so that consecutive keys
+     * are spread over the table.
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Doubles the capacity, keeping the table at most half full.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != MISSING) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+}
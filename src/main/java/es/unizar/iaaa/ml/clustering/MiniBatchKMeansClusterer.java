@@ -0,0 +1,347 @@
+package es.unizar.iaaa.ml.clustering;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+import es.unizar.iaaa.ml.util.DataStoreIterator;
+import es.unizar.iaaa.ml.util.DataStoreReader;
+
+/**
+ * Implementation of the mini-batch K-Means algorithm proposed by Sculley. In
+ * every iteration, a small batch of features is assigned to the nearest
+ * centroids, and each centroid is moved towards its features with a learning
+ * rate that decreases with the number of features it has received. The
+ * centroid of a cluster is the mean of the representative points of its
+ * features, as in the basic K-Means.
+ *
+ * Features can be read from a list or from a data store. In the latter case,
+ * the initial centroids are drawn from a reservoir sample of the whole data
+ * store, and then batches are read as consecutive runs of features, starting
+ * again from the beginning of the data store when it is exhausted, so only one
+ * batch is held in memory while the centroids are being fitted.
+ *
+ * The centroids are point features built with the feature type of the initial
+ * centroids, so they are comparable with the features being clusterized.
+ *
+ * @author Javier Beltran
+ */
+public class MiniBatchKMeansClusterer extends FeatureClusterer {
+
+	private int k;
+	private int batchSize;
+	private int iterations;
+	private List<Clusterable> centroids;
+	private double[] x;
+	private double[] y;
+	private long[] counts;
+	private SimpleFeatureBuilder centroidBuilder;
+	private GeometryFactory factory = new GeometryFactory();
+
+	protected MiniBatchKMeansClusterer(int k, int batchSize, int iterations, DistanceMeasure distance,
+			ClusterBuilder builder, Parameter... params) {
+		super(distance, builder, params);
+
+		if (batchSize < k) {
+			throw new IllegalArgumentException("Batch size must be at least k");
+		}
+		this.k = k;
+		this.batchSize = batchSize;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Given a list of features, fits the centroids with batches sampled from
+	 * the list and then assigns every feature to its nearest centroid.
+	 *
+	 * @param features the list of features to be clusterized.
+	 * @return a list of clusters, leaving out the empty ones.
+	 */
+	@Override
+	public List<Cluster> cluster(List<Clusterable> features)
+			throws ParameterNotFoundException, SchemaException {
+		if (features.size() < k) {
+			throw new IllegalArgumentException("There are less features than clusters");
+		}
+		bindDistance();
+		resetRandom();
+		initializeCentroids(sample(features, k, false));
+		for (int i=0; i<iterations; i++) {
+			update(sample(features, batchSize, true));
+		}
+
+		List<List<Clusterable>> lists = emptyLists();
+		for (Clusterable feature : features) {
+			lists.get(assign(feature)).add(feature);
+		}
+		return toCollections(lists);
+	}
+
+	/**
+	 * Given a data store, fits the centroids with batches read from it and
+	 * then assigns every feature to its nearest centroid in a second pass.
+	 *
+	 * @param reader the data store with the features to be clusterized.
+	 * @return a list of clusters, leaving out the empty ones.
+	 */
+	public List<Cluster> cluster(DataStoreReader reader)
+			throws ParameterNotFoundException, IOException {
+		fit(reader);
+
+		List<List<Clusterable>> lists = emptyLists();
+		try (DataStoreIterator it = reader.iterator()) {
+			while (it.hasNext()) {
+				Clusterable feature = new SimpleFeatureClusterable(it.next());
+				lists.get(assign(feature)).add(feature);
+			}
+		}
+		return toCollections(lists);
+	}
+
+	/**
+	 * Given a data store, fits the centroids with batches read from it. The
+	 * features can be assigned afterwards with assign(), without holding them
+	 * in memory.
+	 *
+	 * @param reader the data store with the features to be clusterized.
+	 */
+	public void fit(DataStoreReader reader) throws ParameterNotFoundException, IOException {
+		bindDistance();
+		resetRandom();
+		/* A reservoir sample avoids seeding all the centroids in one region
+		 * when the data store is sorted */
+		try (DataStoreIterator it = reader.iterator()) {
+			List<Clusterable> seeds = reservoir(it, k);
+			if (seeds.size() < k) {
+				throw new IllegalArgumentException("There are less features than clusters");
+			}
+			initializeCentroids(seeds);
+		}
+
+		DataStoreIterator it = reader.iterator();
+		try {
+			for (int i=0; i<iterations; i++) {
+				List<Clusterable> batch = nextBatch(it, batchSize);
+				if (batch.size() < batchSize) {
+					/* Starts again when the data store is exhausted */
+					it.close();
+					it = reader.iterator();
+					batch.addAll(nextBatch(it, batchSize - batch.size()));
+				}
+				update(batch);
+			}
+		} finally {
+			it.close();
+		}
+	}
+
+	/**
+	 * Given a feature, returns the position of its nearest centroid.
+	 *
+	 * @param feature the feature to be assigned.
+	 * @return the position of the nearest centroid.
+	 */
+	public int assign(Clusterable feature) throws ParameterNotFoundException {
+		int minIndex = 0;
+		double minDistance = Double.POSITIVE_INFINITY;
+		double[] row = new double[centroids.size()];
+
+		/* Selects the least-distant centroid */
+		DistanceMeasureBuilder.distances(boundDistance, feature, centroids, row, params);
+		for (int i=0; i<row.length; i++) {
+			if (row[i] < minDistance) {
+				minDistance = row[i];
+				minIndex = i;
+			}
+		}
+		return minIndex;
+	}
+
+	/**
+	 * Retrieves the centroids fitted so far.
+	 *
+	 * @return the list of centroids.
+	 */
+	public List<Clusterable> getCentroids() {
+		return centroids;
+	}
+
+	/**
+	 * Initializes the centroids at the positions of some features.
+	 *
+	 * @param features the features selected as centroids.
+	 */
+	private void initializeCentroids(List<Clusterable> features) {
+		centroids = new ArrayList<>(features);
+		x = new double[k];
+		y = new double[k];
+		counts = new long[k];
+		centroidBuilder = new SimpleFeatureBuilder(
+				features.get(0).getAttribute(Clusterable.Property.FEATURE_TYPE, SimpleFeatureType.class));
+		for (int i=0; i<k; i++) {
+			Point point = features.get(i).getAttribute(Clusterable.Property.REPRESENTATIVE_POINT, Point.class);
+			x[i] = point.getX();
+			y[i] = point.getY();
+		}
+	}
+
+	/**
+	 * Assigns a batch of features to the present centroids, and then moves
+	 * every centroid towards its features.
+	 *
+	 * @param batch the batch of features.
+	 */
+	private void update(List<Clusterable> batch) throws ParameterNotFoundException {
+		/* Assignments are computed before any centroid moves */
+		int[] assigned = new int[batch.size()];
+		for (int i=0; i<batch.size(); i++) {
+			assigned[i] = assign(batch.get(i));
+		}
+
+		/* Every feature moves its centroid with a decreasing learning rate */
+		boolean[] moved = new boolean[k];
+		for (int i=0; i<batch.size(); i++) {
+			int c = assigned[i];
+			Point point = batch.get(i).getAttribute(Clusterable.Property.REPRESENTATIVE_POINT, Point.class);
+			counts[c]++;
+			double rate = 1.0 / counts[c];
+			x[c] += rate * (point.getX() - x[c]);
+			y[c] += rate * (point.getY() - y[c]);
+			moved[c] = true;
+		}
+
+		for (int c=0; c<k; c++) {
+			if (moved[c]) {
+				centroids.set(c, createCentroid(x[c], y[c]));
+			}
+		}
+	}
+
+	/**
+	 * Creates a point feature located at the position of a centroid.
+	 *
+	 * @param x the x coordinate of the centroid.
+	 * @param y the y coordinate of the centroid.
+	 * @return the centroid.
+	 */
+	private Clusterable createCentroid(double x, double y) {
+		centroidBuilder.add(factory.createPoint(new Coordinate(x, y)));
+		return new SimpleFeatureClusterable(centroidBuilder.buildFeature(null));
+	}
+
+	/**
+	 * Selects some random features from a list.
+	 *
+	 * @param features the list of features.
+	 * @param size the number of features to be selected.
+	 * @param replacement true, if a feature can be selected more than once.
+	 * @return the selected features.
+	 */
+	private List<Clusterable> sample(List<Clusterable> features, int size, boolean replacement) {
+		List<Clusterable> sample = new ArrayList<>(size);
+		if (replacement) {
+			for (int i=0; i<size; i++) {
+				sample.add(features.get(random.nextInt(features.size())));
+			}
+		} else {
+			/* Partial shuffle of a copy, keeping the first size elements */
+			List<Clusterable> copy = new ArrayList<>(features);
+			for (int i=0; i<size; i++) {
+				int j = i + random.nextInt(copy.size() - i);
+				Clusterable swap = copy.get(i);
+				copy.set(i, copy.get(j));
+				copy.set(j, swap);
+				sample.add(copy.get(i));
+			}
+		}
+		return sample;
+	}
+
+	/**
+	 * Selects some random features from a data store iterator in a single
+	 * pass, holding only the selected ones in memory.
+	 *
+	 * @param it the data store iterator.
+	 * @param size the number of features to be selected.
+	 * @return the selected features, that are less when the data store is shorter.
+	 */
+	private List<Clusterable> reservoir(DataStoreIterator it, int size) {
+		List<Clusterable> sample = new ArrayList<>(size);
+		long seen = 0;
+		while (it.hasNext()) {
+			SimpleFeature next = it.next();
+			seen++;
+			if (sample.size() < size) {
+				sample.add(new SimpleFeatureClusterable(next));
+			} else {
+				long j = (long) (random.nextDouble() * seen);
+				if (j < size) {
+					sample.set((int) j, new SimpleFeatureClusterable(next));
+				}
+			}
+		}
+		return sample;
+	}
+
+	/**
+	 * Reads the next batch of features from a data store iterator.
+	 *
+	 * @param it the data store iterator.
+	 * @param size the max number of features to be read.
+	 * @return the batch, that is shorter when the data store is exhausted.
+	 */
+	private List<Clusterable> nextBatch(DataStoreIterator it, int size) {
+		List<Clusterable> batch = new ArrayList<>(size);
+		while (batch.size() < size && it.hasNext()) {
+			batch.add(new SimpleFeatureClusterable(it.next()));
+		}
+		return batch;
+	}
+
+	/**
+	 * Creates an empty list of features for every centroid.
+	 *
+	 * @return a list of k empty lists.
+	 */
+	private List<List<Clusterable>> emptyLists() {
+		List<List<Clusterable>> lists = new ArrayList<>(k);
+		for (int i=0; i<k; i++) {
+			lists.add(new ArrayList<Clusterable>());
+		}
+		return lists;
+	}
+
+	/**
+	 * Creates a cluster with every non-empty list of features.
+	 *
+	 * @param lists the lists of features.
+	 * @return a list of clusters.
+	 */
+	private List<Cluster> toCollections(List<List<Clusterable>> lists) {
+		List<Cluster> collections = new ArrayList<>(lists.size());
+		for (List<Clusterable> l : lists) {
+			if (!l.isEmpty()) {
+				collections.add(builder.create(l));
+			}
+		}
+		return collections;
+	}
+
+}
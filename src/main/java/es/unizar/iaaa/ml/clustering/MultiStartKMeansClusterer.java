@@ -0,0 +1,267 @@
+package es.unizar.iaaa.ml.clustering;
+
+import org.geotools.feature.SchemaException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A multi-start clusterer runs several independent K-Means clusterers with the
+ * same features and keeps the clusters of the run with the lowest cost, that
+ * is, the lowest sum of squared distances from every feature to its centroid.
+ * As every run starts from its own random centroids, this makes the result
+ * less dependent on a bad initialization.
+ *
+ * The runs can be executed concurrently in a pool of threads. The cost, the
+ * number of iterations and the time of every run of the last execution are
+ * kept as statistics.
+ *
+ * When a seed is set, every clusterer is given its own seed, drawn from it in
+ * order before every execution, so the same features always give the same
+ * clusters.
+ *
+ * @author Javier Beltran
+ */
+public class MultiStartKMeansClusterer extends FeatureClusterer {
+	
+	private final List<KMeansClusterer> clusterers;
+	private int parallelism = 1;
+	private List<Run> runs = Collections.emptyList();
+	private int best = -1;
+	private Long seed;
+	
+	/**
+	 * Creates a multi-start clusterer that runs every clusterer once. They
+	 * must be different instances, as every one keeps the state of its run.
+	 *
+	 * @param clusterers the clusterers to be run.
+	 */
+	protected MultiStartKMeansClusterer(List<? extends KMeansClusterer> clusterers) {
+		super(first(clusterers).distance, first(clusterers).builder, first(clusterers).params);
+		
+		Set<KMeansClusterer> distinct = Collections.newSetFromMap(
+				new IdentityHashMap<KMeansClusterer, Boolean>());
+		distinct.addAll(clusterers);
+		if (distinct.size() != clusterers.size()) {
+			throw new IllegalArgumentException("Clusterers must be different instances");
+		}
+		this.clusterers = new ArrayList<KMeansClusterer>(clusterers);
+	}
+	
+	/**
+	 * Runs every clusterer with the features, and returns the clusters of the
+	 * run with the lowest cost.
+	 *
+	 * @param features the list of features to be clusterized.
+	 * @return the clusters of the best run.
+	 */
+	@Override
+	public List<Cluster> cluster(final List<Clusterable> features)
+			throws ParameterNotFoundException, SchemaException {
+		if (seed != null) {
+			Random seeds = new Random(seed);
+			for (KMeansClusterer clusterer : clusterers) {
+				clusterer.setSeed(seeds.nextLong());
+			}
+		}
+		
+		List<Callable<List<Cluster>>> tasks = new ArrayList<>(clusterers.size());
+		final Run[] done = new Run[clusterers.size()];
+		for (int i=0; i<clusterers.size(); i++) {
+			final int index = i;
+			tasks.add(new Callable<List<Cluster>>() {
+				@Override
+				public List<Cluster> call() throws ParameterNotFoundException, SchemaException {
+					KMeansClusterer clusterer = clusterers.get(index);
+					long start = System.nanoTime();
+					List<Cluster> clusters = clusterer.cluster(features);
+					done[index] = new Run(clusterer.getCost(), clusterer.getIterations(),
+							System.nanoTime() - start);
+					return clusters;
+				}
+			});
+		}
+		
+		List<List<Cluster>> results = parallelism > 1 ? invokeAll(tasks) : callAll(tasks);
+		
+		/* Keeps the first run with the lowest cost */
+		best = 0;
+		for (int i=1; i<done.length; i++) {
+			if (done[i].getCost() < done[best].getCost()) {
+				best = i;
+			}
+		}
+		runs = Collections.unmodifiableList(Arrays.asList(done));
+		return results.get(best);
+	}
+	
+	/**
+	 * Sets the seed from which the seeds of the clusterers are drawn. Without
+	 * a seed, every clusterer keeps its own.
+	 *
+	 * @param seed the seed of the random number generator.
+	 */
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		this.seed = seed;
+	}
+	
+	/**
+	 * Sets the number of runs executed at the same time. With a single
+	 * thread, the runs are executed one after another.
+	 *
+	 * @param parallelism the number of threads.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Retrieves the statistics of every run of the last execution, in the
+	 * order of the clusterers.
+	 *
+	 * @return the list of runs.
+	 */
+	public List<Run> getRuns() {
+		return runs;
+	}
+	
+	/**
+	 * Retrieves the position of the run whose clusters were returned by the
+	 * last execution.
+	 *
+	 * @return the position of the best run, or -1 before any execution.
+	 */
+	public int getBestRun() {
+		return best;
+	}
+	
+	/**
+	 * Runs the tasks one after another.
+	 *
+	 * @param tasks the list of tasks
+	 * @return the result of every task
+	 */
+	private List<List<Cluster>> callAll(List<Callable<List<Cluster>>> tasks)
+			throws ParameterNotFoundException, SchemaException {
+		List<List<Cluster>> results = new ArrayList<>(tasks.size());
+		for (Callable<List<Cluster>> task : tasks) {
+			try {
+				results.add(task.call());
+			} catch (ParameterNotFoundException | SchemaException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs the tasks in a pool of threads, and waits for all of them.
+	 *
+	 * @param tasks the list of tasks
+	 * @return the result of every task
+	 */
+	private List<List<Cluster>> invokeAll(List<Callable<List<Cluster>>> tasks)
+			throws ParameterNotFoundException, SchemaException {
+		ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, tasks.size()));
+		try {
+			List<List<Cluster>> results = new ArrayList<>(tasks.size());
+			for (Future<List<Cluster>> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ParameterNotFoundException) {
+				throw (ParameterNotFoundException) cause;
+			} else if (cause instanceof SchemaException) {
+				throw (SchemaException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while clustering", e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Retrieves the first of a list of clusterers, checking that there is one.
+	 */
+	private static KMeansClusterer first(List<? extends KMeansClusterer> clusterers) {
+		if (clusterers.isEmpty()) {
+			throw new IllegalArgumentException("There must be at least one clusterer");
+		}
+		return clusterers.get(0);
+	}
+	
+	/**
+	 * The statistics of a run: the cost of its clusters, its number of
+	 * iterations and the time it took.
+	 */
+	public static class Run {
+		
+		private final double cost;
+		private final int iterations;
+		private final long nanos;
+		
+		Run(double cost, int iterations, long nanos) {
+			this.cost = cost;
+			this.iterations = iterations;
+			this.nanos = nanos;
+		}
+		
+		/**
+		 * Retrieves the sum of the squared distances from every feature to
+		 * its centroid.
+		 *
+		 * @return the cost of the run.
+		 */
+		public double getCost() {
+			return cost;
+		}
+		
+		/**
+		 * Retrieves the number of iterations of the run.
+		 *
+		 * @return the number of iterations.
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+		
+		/**
+		 * Retrieves the time that the run took.
+		 *
+		 * @return the time, in milliseconds.
+		 */
+		public double getMillis() {
+			return nanos / 1e6;
+		}
+	}
+	
+}
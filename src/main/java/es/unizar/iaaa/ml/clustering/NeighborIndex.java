@@ -0,0 +1,111 @@
+package es.unizar.iaaa.ml.clustering;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+
+/**
+ * A neighbor index prunes the candidates of a region query before the exact
+ * distance is computed. Features are indexed by the envelope of their
+ * representative geometry, so any feature whose envelope is farther than eps
+ * from the envelope of the queried feature is discarded.
+ *
+ * This is only valid for distance measures that are never smaller than the gap
+ * between the envelopes of both features, as it happens with the euclidean and
+ * the hausdorff distances. Features without a geometry have no envelope, so
+ * they are always returned as candidates.
+ *
+ * @author Javier Beltran
+ */
+class NeighborIndex {
+
+    private final STRtree tree;
+    private final List<Integer> unindexed;
+    private final int size;
+    private final double eps;
+
+    NeighborIndex(List<Clusterable> features, double eps) {
+        this.eps = eps;
+        size = features.size();
+        tree = new STRtree();
+        unindexed = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Envelope envelope = envelope(features.get(i));
+            if (envelope != null) {
+                tree.insert(envelope, i);
+            } else {
+                unindexed.add(i);
+            }
+        }
+        tree.build();
+    }
+
+    /**
+     * Given a feature, returns the positions of the features that can be at a
+     * distance <= eps from it, in ascending order.
+     *
+     * @param feature the feature whose neighbors are being retrieved.
+     * @return the positions of the candidate neighbors.
+     */
+    int[] candidates(Clusterable feature) {
+        Envelope envelope = envelope(feature);
+        if (envelope == null) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        List<?> items = tree.query(expand(envelope, eps));
+        int[] candidates = new int[items.size() + unindexed.size()];
+        for (int i = 0; i < items.size(); i++) {
+            candidates[i] = (Integer) items.get(i);
+        }
+        for (int i = 0; i < unindexed.size(); i++) {
+            candidates[items.size() + i] = unindexed.get(i);
+        }
+
+        /* Keeps the order of the feature list, as a linear scan would do */
+        Arrays.sort(candidates);
+        return candidates;
+    }
+
+    /**
+     * Expands an envelope by eps, plus a margin for rounding errors, so that
+     * it covers any envelope within eps of it.
+     *
+     * @param envelope the envelope, which is not modified.
+     * @param eps      the distance to cover.
+     * @return the expanded envelope.
+     */
+    static Envelope expand(Envelope envelope, double eps) {
+        Envelope query = new Envelope(envelope);
+        query.expandBy(eps);
+        query.expandBy(4 * Math.ulp(Math.max(
+                Math.max(Math.abs(query.getMinX()), Math.abs(query.getMaxX())),
+                Math.max(Math.abs(query.getMinY()), Math.abs(query.getMaxY())))));
+        return query;
+    }
+
+    /**
+     * Retrieves the envelope of the representative geometry of a feature.
+     *
+     * @param feature the feature.
+     * @return its envelope, or null if it has no geometry.
+     */
+    static Envelope envelope(Clusterable feature) {
+        Geometry geometry = feature.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class);
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        return geometry.getEnvelopeInternal();
+    }
+
+}
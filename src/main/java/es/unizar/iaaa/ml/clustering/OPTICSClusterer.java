@@ -0,0 +1,335 @@
+package es.unizar.iaaa.ml.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.distance.DistanceMeasureBuilder;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * An implementation of the OPTICS algorithm proposed by Ankerst et al. It
+ * orders the features so that the densest regions come together, and computes
+ * the reachability distance of every feature, which is the smallest eps that
+ * makes it part of the cluster of the features before it. The neighbors of
+ * every feature within a maximum eps are retrieved once, and then the
+ * clusters of DBSCAN for any eps up to the maximum can be extracted from the
+ * ordering in linear time, without computing any distance.
+ *
+ * As in DBSCANClusterer, a feature is a core feature if it has at least minPts
+ * neighbors, besides itself. Clusters extracted for an eps have the same core
+ * features as those of DBSCANClusterer, but a border feature next to several
+ * clusters may be part of another one of them.
+ *
+ * @author Javier Beltran
+ */
+public class OPTICSClusterer extends FeatureClusterer {
+
+    private double maxEps;
+    private int minPts;
+    private DBSCANClusterer.Index index;
+    private List<Clusterable> features;
+    private int[] ordering;
+    private double[] reachability;
+    private double[] coreDistance;
+
+    protected OPTICSClusterer(double maxEps, int minPts, DistanceMeasure distance, ClusterBuilder builder,
+            Parameter... params) {
+        this(maxEps, minPts, distance, builder, DBSCANClusterer.Index.LINEAR_SCAN, params);
+    }
+
+    protected OPTICSClusterer(double maxEps, int minPts, DistanceMeasure distance, ClusterBuilder builder,
+            DBSCANClusterer.Index index, Parameter... params) {
+        super(distance, builder, params);
+
+        if (!(maxEps >= 0)) {
+            throw new IllegalArgumentException("Max eps must be non-negative");
+        }
+        this.maxEps = maxEps;
+        this.minPts = minPts;
+        this.index = index;
+    }
+
+    /**
+     * Given the entry features, computes their ordering and returns the
+     * clusters for the maximum eps.
+     *
+     * @param features a list of features to be clusterized
+     * @return a list of clusters (feature collections).
+     */
+    @Override
+    public List<Cluster> cluster(List<Clusterable> features) throws ParameterNotFoundException {
+        order(features);
+        return extract(maxEps);
+    }
+
+    /**
+     * Computes the ordering of some features and their reachability and core
+     * distances, which are kept to extract clusters afterwards.
+     *
+     * @param features a list of features to be ordered
+     */
+    public void order(List<Clusterable> features) throws ParameterNotFoundException {
+        bindDistance();
+        int size = features.size();
+        NeighborIndex neighborIndex = index == DBSCANClusterer.Index.STR_TREE
+                ? new NeighborIndex(features, maxEps) : null;
+        int[] order = new int[size];
+        double[] reach = new double[size];
+        double[] core = new double[size];
+        boolean[] processed = new boolean[size];
+        int[] neighbors = new int[size];
+        double[] distances = new double[size];
+        ReachabilityHeap seeds = new ReachabilityHeap(size);
+        Arrays.fill(reach, Double.POSITIVE_INFINITY);
+
+        int next = 0;
+        for (int start = 0; start < size; start++) {
+            if (processed[start]) {
+                continue;
+            }
+            seeds.add(start, Double.POSITIVE_INFINITY);
+
+            /* Visits the nearest reachable feature, until none is left */
+            while (!seeds.isEmpty()) {
+                int current = seeds.poll();
+                processed[current] = true;
+                order[next++] = current;
+
+                int count = getNeighbors(current, features, neighborIndex, neighbors, distances);
+                core[current] = coreDistance(distances, count);
+                if (core[current] > maxEps) {
+                    continue;
+                }
+                for (int j = 0; j < count; j++) {
+                    int neighbor = neighbors[j];
+                    double d = Math.max(core[current], distances[j]);
+                    if (!processed[neighbor] && d < reach[neighbor]) {
+                        reach[neighbor] = d;
+                        seeds.update(neighbor, d);
+                    }
+                }
+            }
+        }
+
+        this.features = features;
+        ordering = order;
+        reachability = reach;
+        coreDistance = core;
+    }
+
+    /**
+     * Extracts the clusters of DBSCAN for an eps from the last ordering. A
+     * feature starts a new cluster when it is not reachable from the features
+     * before it within eps, but it is a core feature.
+     *
+     * @param eps the max distance between neighbors, up to the maximum eps.
+     * @return a list of clusters (feature collections).
+     */
+    public List<Cluster> extract(double eps) {
+        if (ordering == null) {
+            throw new IllegalStateException("The features have not been ordered");
+        }
+        if (!(eps >= 0 && eps <= maxEps)) {
+            throw new IllegalArgumentException("Eps must be between 0 and the max eps");
+        }
+
+        int[] labels = new int[ordering.length];
+        int cluster = NOISE;
+        int clusters = 0;
+        for (int i : ordering) {
+            if (reachability[i] > eps) {
+                cluster = coreDistance[i] <= eps ? clusters++ : NOISE;
+            }
+            labels[i] = cluster;
+        }
+        return toClusters(features, labels);
+    }
+
+    /**
+     * Retrieves the positions of the features in the order of the last
+     * ordering.
+     *
+     * @return the ordering of the features.
+     */
+    public int[] getOrdering() {
+        return ordering == null ? null : ordering.clone();
+    }
+
+    /**
+     * Retrieves the reachability distance of every feature of the last
+     * ordering, by its position in the list. It is infinite for the features
+     * that start the ordering of a region.
+     *
+     * @return the reachability distances.
+     */
+    public double[] getReachability() {
+        return reachability == null ? null : reachability.clone();
+    }
+
+    /**
+     * Retrieves the core distance of every feature of the last ordering, by
+     * its position in the list. It is the smallest eps that makes it a core
+     * feature, or infinite if it is greater than the maximum eps.
+     *
+     * @return the core distances.
+     */
+    public double[] getCoreDistance() {
+        return coreDistance == null ? null : coreDistance.clone();
+    }
+
+    /**
+     * Computes the distance to the minPts-th nearest neighbor, which is the
+     * smallest eps that makes a feature a core feature.
+     *
+     * @param distances the distances to the neighbors.
+     * @param count     the number of neighbors.
+     * @return the core distance, or infinity if there are not enough neighbors.
+     */
+    private double coreDistance(double[] distances, int count) {
+        if (minPts <= 0) {
+            return 0;
+        }
+        if (count < minPts) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double[] sorted = Arrays.copyOf(distances, count);
+        Arrays.sort(sorted);
+        return sorted[minPts - 1];
+    }
+
+    /**
+     * Given the position of a feature, retrieves the positions of its
+     * neighbors within the maximum eps, and the distances to them.
+     *
+     * @param i             the position of the feature.
+     * @param features      the features that can be neighbors of feature.
+     * @param neighborIndex the spatial index, or null to scan every feature.
+     * @param neighbors     an array where the positions of the neighbors are
+     *                      written.
+     * @param distances     an array where the distances to the neighbors are
+     *                      written.
+     * @return the number of neighbors.
+     */
+    private int getNeighbors(int i, List<Clusterable> features, NeighborIndex neighborIndex, int[] neighbors,
+            double[] distances) throws ParameterNotFoundException {
+        Clusterable feature = features.get(i);
+        int[] candidates = neighborIndex != null ? neighborIndex.candidates(feature) : null;
+        int total = candidates != null ? candidates.length : features.size();
+        int count = 0;
+        for (int k = 0; k < total; k++) {
+            int candidate = candidates != null ? candidates[k] : k;
+            if (candidate == i) {
+                continue;
+            }
+            double d = DistanceMeasureBuilder.distanceUpTo(boundDistance, features.get(candidate), feature,
+                    maxEps, params);
+            if (d <= maxEps) {
+                neighbors[count] = candidate;
+                distances[count] = d;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A binary heap of features keyed by their reachability distance, where
+     * the key of a feature can be decreased. Ties are broken by the position
+     * of the features, so the ordering does not depend on the heap.
+     */
+    private static class ReachabilityHeap {
+
+        private final int[] heap;
+        private final int[] slots;
+        private final double[] keys;
+        private int size;
+
+        ReachabilityHeap(int capacity) {
+            heap = new int[capacity];
+            slots = new int[capacity];
+            keys = new double[capacity];
+            Arrays.fill(slots, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(int feature, double key) {
+            keys[feature] = key;
+            heap[size] = feature;
+            slots[feature] = size;
+            up(size++);
+        }
+
+        /**
+         * Adds a feature, or decreases its key if it is already there.
+         */
+        void update(int feature, double key) {
+            if (slots[feature] < 0) {
+                add(feature, key);
+            } else {
+                keys[feature] = key;
+                up(slots[feature]);
+            }
+        }
+
+        int poll() {
+            int first = heap[0];
+            slots[first] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                slots[heap[0]] = 0;
+                down(0);
+            }
+            return first;
+        }
+
+        private boolean less(int a, int b) {
+            return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+        }
+
+        private void up(int slot) {
+            int feature = heap[slot];
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (!less(feature, heap[parent])) {
+                    break;
+                }
+                heap[slot] = heap[parent];
+                slots[heap[slot]] = slot;
+                slot = parent;
+            }
+            heap[slot] = feature;
+            slots[feature] = slot;
+        }
+
+        private void down(int slot) {
+            int feature = heap[slot];
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], feature)) {
+                    break;
+                }
+                heap[slot] = heap[child];
+                slots[heap[slot]] = slot;
+                slot = child;
+            }
+            heap[slot] = feature;
+            slots[feature] = slot;
+        }
+    }
+
+}
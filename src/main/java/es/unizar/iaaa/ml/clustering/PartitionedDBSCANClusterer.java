@@ -0,0 +1,324 @@
+package es.unizar.iaaa.ml.clustering;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.ClusterBuilder;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.distance.DistanceMeasure;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A DBSCAN clusterer that splits the extent of the features into a grid of
+ * tiles and processes the tiles concurrently in a fork-join pool. Every feature
+ * belongs to the tile that contains the center of its envelope. A tile answers
+ * the region queries of its features with an index of them and of the features
+ * of other tiles within eps, its halo, and merges the core features that are
+ * neighbors inside the tile. The pairs of core features that are neighbors
+ * across tile borders are merged afterwards.
+ *
+ * Clusters are labelled as DBSCANClusterer does, so they are the same, in the
+ * same order. As with its spatial index, the distance measure must never be
+ * smaller than the gap between the envelopes of the features, like the
+ * euclidean and hausdorff distances. If some feature has no geometry, the
+ * features are clustered without tiles.
+ *
+ * @author Javier Beltran
+ */
+public class PartitionedDBSCANClusterer extends DBSCANClusterer {
+
+    /* Number of tiles per thread, so that uneven tiles are balanced */
+    private static final int TILES_PER_THREAD = 4;
+
+    private int parallelism = 1;
+
+    protected PartitionedDBSCANClusterer(double eps, int minPts, DistanceMeasure distance, ClusterBuilder builder,
+            Parameter... params) {
+        super(eps, minPts, distance, builder, Index.STR_TREE, params);
+    }
+
+    /**
+     * Sets the number of threads that process the tiles. There are four tiles
+     * per thread.
+     *
+     * @param parallelism the number of threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Given the entry features, returns a list of feature collections, each
+     * representing a cluster.
+     *
+     * @param features a list of features to be clusterized
+     * @return a list of clusters (feature collections).
+     */
+    @Override
+    public List<Cluster> cluster(List<Clusterable> features) throws ParameterNotFoundException {
+        bindDistance();
+        int size = features.size();
+        Envelope[] envelopes = new Envelope[size];
+        for (int i = 0; i < size; i++) {
+            envelopes[i] = NeighborIndex.envelope(features.get(i));
+            if (envelopes[i] == null) {
+                return super.cluster(features);
+            }
+        }
+
+        boolean[] core = new boolean[size];
+        int[][] borderNeighbors = new int[size][];
+        int[] localRoots = new int[size];
+        List<Tile> tiles = tiles(envelopes);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new TileTask(tiles, 0, tiles.size(), features, core, borderNeighbors, localRoots));
+        } catch (UncheckedParameterException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        /* Merges the clusters of every tile, and then across tile borders */
+        DisjointSets cores = new DisjointSets(size);
+        for (int i = 0; i < size; i++) {
+            if (core[i]) {
+                cores.union(i, localRoots[i]);
+            }
+        }
+        for (Tile tile : tiles) {
+            for (int i = 0; i < tile.crossing; i += 2) {
+                if (core[tile.crossingPairs[i + 1]]) {
+                    cores.union(tile.crossingPairs[i], tile.crossingPairs[i + 1]);
+                }
+            }
+        }
+
+        return toClusters(features, label(core, borderNeighbors, cores));
+    }
+
+    /**
+     * Splits the features into a grid of tiles by the centers of their
+     * envelopes, and finds the features in the halo of every tile.
+     *
+     * @param envelopes the envelope of every feature.
+     * @return the tiles that have some feature.
+     */
+    private List<Tile> tiles(Envelope[] envelopes) {
+        Envelope extent = new Envelope();
+        for (Envelope envelope : envelopes) {
+            extent.expandToInclude(envelope.centre());
+        }
+        int side = (int) Math.ceil(Math.sqrt(parallelism * TILES_PER_THREAD));
+
+        /* Counts the features of every tile, and lists them in order */
+        int[] cells = new int[envelopes.length];
+        int[] counts = new int[side * side];
+        for (int i = 0; i < envelopes.length; i++) {
+            cells[i] = cell(envelopes[i], extent, side);
+            counts[cells[i]]++;
+        }
+        int[][] owned = new int[counts.length][];
+        for (int c = 0; c < counts.length; c++) {
+            owned[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int i = 0; i < envelopes.length; i++) {
+            owned[cells[i]][counts[cells[i]]++] = i;
+        }
+
+        STRtree tree = new STRtree();
+        for (int i = 0; i < envelopes.length; i++) {
+            tree.insert(envelopes[i], i);
+        }
+        tree.build();
+
+        /* The halo covers any feature within eps of the features of the tile */
+        List<Tile> tiles = new ArrayList<>();
+        for (int c = 0; c < owned.length; c++) {
+            if (owned[c].length == 0) {
+                continue;
+            }
+            Envelope query = new Envelope();
+            for (int i : owned[c]) {
+                query.expandToInclude(envelopes[i]);
+            }
+
+            List<?> items = tree.query(NeighborIndex.expand(query, eps));
+            int[] local = new int[items.size()];
+            for (int i = 0; i < local.length; i++) {
+                local[i] = (Integer) items.get(i);
+            }
+            Arrays.sort(local);
+            tiles.add(new Tile(owned[c], local));
+        }
+        return tiles;
+    }
+
+    /**
+     * Finds the cell of the grid that contains the center of an envelope.
+     */
+    private static int cell(Envelope envelope, Envelope extent, int side) {
+        int column = (int) (side * (envelope.centre().x - extent.getMinX()) / extent.getWidth());
+        int row = (int) (side * (envelope.centre().y - extent.getMinY()) / extent.getHeight());
+        column = extent.getWidth() > 0 ? Math.min(side - 1, column) : 0;
+        row = extent.getHeight() > 0 ? Math.min(side - 1, row) : 0;
+        return row * side + column;
+    }
+
+    /**
+     * Answers the region queries of the features of a tile. Core features are
+     * merged with their core neighbors of the same tile, and their neighbors
+     * of other tiles are kept, as their status is not known yet.
+     *
+     * @param tile            the tile.
+     * @param features        a list with all the features.
+     * @param core            whether every feature is a core feature, which is
+     *                        filled for the features of the tile.
+     * @param borderNeighbors the neighbors of every feature that is not core,
+     *                        which is filled for the features of the tile.
+     * @param localRoots      the first core feature of the tile merged with
+     *                        every core feature, which is filled for the
+     *                        features of the tile.
+     */
+    private void process(Tile tile, List<Clusterable> features, boolean[] core, int[][] borderNeighbors,
+            int[] localRoots) throws ParameterNotFoundException {
+        List<Clusterable> localFeatures = new ArrayList<>(tile.local.length);
+        for (int i : tile.local) {
+            localFeatures.add(features.get(i));
+        }
+        NeighborIndex index = new NeighborIndex(localFeatures, eps);
+        DisjointSets cores = new DisjointSets(tile.local.length);
+        boolean[] localCore = new boolean[tile.local.length];
+        boolean[] owned = new boolean[tile.local.length];
+        int[] neighbors = new int[tile.local.length];
+
+        for (int i : tile.owned) {
+            owned[Arrays.binarySearch(tile.local, i)] = true;
+        }
+
+        for (int i = 0; i < tile.local.length; i++) {
+            if (!owned[i]) {
+                continue;
+            }
+            int count = 0;
+            for (final int candidate : index.candidates(localFeatures.get(i))) {
+                if (isNeighbor(i, candidate, localFeatures)) {
+                    neighbors[count++] = candidate;
+                }
+            }
+
+            if (count >= minPts) {
+                /* Merges the feature with its core neighbors of the tile */
+                localCore[i] = true;
+                for (int j = 0; j < count; j++) {
+                    int neighbor = neighbors[j];
+                    if (!owned[neighbor]) {
+                        tile.cross(tile.local[i], tile.local[neighbor]);
+                    } else if (localCore[neighbor]) {
+                        cores.union(i, neighbor);
+                    }
+                }
+            } else {
+                int[] border = new int[count];
+                for (int j = 0; j < count; j++) {
+                    border[j] = tile.local[neighbors[j]];
+                }
+                borderNeighbors[tile.local[i]] = border;
+            }
+        }
+
+        for (int i = 0; i < tile.local.length; i++) {
+            if (localCore[i]) {
+                core[tile.local[i]] = true;
+                localRoots[tile.local[i]] = tile.local[cores.find(i)];
+            }
+        }
+    }
+
+    /**
+     * A tile of the grid: the features that belong to it, the features within
+     * eps of them, and the pairs of neighbors across its borders.
+     */
+    private static class Tile {
+
+        private final int[] owned;
+        private final int[] local;
+        private int[] crossingPairs = new int[16];
+        private int crossing;
+
+        Tile(int[] owned, int[] local) {
+            this.owned = owned;
+            this.local = local;
+        }
+
+        /**
+         * Keeps a core feature of the tile and a neighbor of another tile.
+         */
+        void cross(int feature, int neighbor) {
+            if (crossing == crossingPairs.length) {
+                crossingPairs = Arrays.copyOf(crossingPairs, 2 * crossing);
+            }
+            crossingPairs[crossing++] = feature;
+            crossingPairs[crossing++] = neighbor;
+        }
+    }
+
+    /**
+     * A fork-join task that processes a range of tiles, splitting it in halves
+     * until a single tile is left.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Tile> tiles;
+        private final int from;
+        private final int to;
+        private final List<Clusterable> features;
+        private final boolean[] core;
+        private final int[][] borderNeighbors;
+        private final int[] localRoots;
+
+        TileTask(List<Tile> tiles, int from, int to, List<Clusterable> features, boolean[] core,
+                int[][] borderNeighbors, int[] localRoots) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.features = features;
+            this.core = core;
+            this.borderNeighbors = borderNeighbors;
+            this.localRoots = localRoots;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                try {
+                    for (int i = from; i < to; i++) {
+                        process(tiles.get(i), features, core, borderNeighbors, localRoots);
+                    }
+                } catch (ParameterNotFoundException e) {
+                    throw new UncheckedParameterException(e);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle, features, core, borderNeighbors, localRoots),
+                        new TileTask(tiles, middle, to, features, core, borderNeighbors, localRoots));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package es.unizar.iaaa.ml.clustering;
+
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * Carries a ParameterNotFoundException out of a fork-join task.
+ *
+ * @author Javier Beltran
+ */
+class UncheckedParameterException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	UncheckedParameterException(ParameterNotFoundException cause) {
+		super(cause);
+	}
+
+	@Override
+	public synchronized ParameterNotFoundException getCause() {
+		return (ParameterNotFoundException) super.getCause();
+	}
+
+}
@@ -15,7 +15,7 @@ import static es.unizar.iaaa.ml.parameter.ParameterBuilder.hasParam;
  * 
  * @author Javier Beltran
  */
-public class AbsoluteDifferenceDistance implements DistanceMeasure {
+public class AbsoluteDifferenceDistance implements BindableDistanceMeasure {
 
 	/**
 	 * Given two clusterable elements and a parameter they both contain,
@@ -30,13 +30,39 @@ public class AbsoluteDifferenceDistance implements DistanceMeasure {
 		if (hasParam(params, NumberAttr.class)) {
 			Attribute attr = getAttr(params, NumberAttr.class);
 
-			long valueA = (long) a.getAttribute(attr.getName(), Integer.class);
-			long valueB = (long) b.getAttribute(attr.getName(), Integer.class);
-			
-			return Math.abs(valueA - valueB);
+			return distance(a, b, attr.getName());
 		} else {
 			throw new ParameterNotFoundException();
 		}
 	}
+	
+	/**
+	 * Resolves the attribute to compare, so that the bound distance computes
+	 * the absolute difference without looking it up again.
+	 * 
+	 * @param params a list of parameters. Should contain the comparing one.
+	 * @return the bound distance.
+	 */
+	@Override
+	public BoundDistance bind(Parameter... params) throws ParameterNotFoundException {
+		final String name = getAttr(params, NumberAttr.class).getName();
+		return new BoundDistance() {
+			@Override
+			public double distance(Clusterable a, Clusterable b) {
+				return AbsoluteDifferenceDistance.distance(a, b, name);
+			}
+		};
+	}
+	
+	/**
+	 * Calculates the absolute difference between the values of an attribute
+	 * of two elements.
+	 */
+	private static double distance(Clusterable a, Clusterable b, String name) {
+		long valueA = (long) a.getAttribute(name, Integer.class);
+		long valueB = (long) b.getAttribute(name, Integer.class);
+		
+		return Math.abs(valueA - valueB);
+	}
 
 }
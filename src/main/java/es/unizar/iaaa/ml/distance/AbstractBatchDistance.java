@@ -0,0 +1,25 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A base for batch distance measures. The distances of a batch are computed
+ * one by one unless a subclass overrides it.
+ *
+ * @author Javier Beltran
+ */
+public abstract class AbstractBatchDistance implements BatchDistanceMeasure {
+
+    @Override
+    public void distances(Clusterable a, List<Clusterable> others, double[] out, Parameter... params)
+            throws ParameterNotFoundException {
+        for (int j = 0; j < others.size(); j++) {
+            out[j] = distance(a, others.get(j), params);
+        }
+    }
+
+}
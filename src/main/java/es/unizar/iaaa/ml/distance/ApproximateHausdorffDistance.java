@@ -0,0 +1,254 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Attribute;
+import es.unizar.iaaa.ml.parameter.GeomAttr;
+import es.unizar.iaaa.ml.parameter.MaxError;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+import es.unizar.iaaa.ml.util.PointIndex;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.getAttr;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.getParam;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.hasParam;
+
+/**
+ * An approximate implementation of the HausdorffDistance, whose absolute error
+ * is never greater than a given maximum error. It is meant for geometries with
+ * so many points, like coastlines or rivers, that even the exact distance with
+ * an index is too slow.
+ *
+ * The points of every geometry are snapped to the centers of the cells of a
+ * grid whose diagonal is the maximum error, and repeated consecutive cells are
+ * dropped. Every point moves at most half the maximum error, so the distance
+ * between the snapped sets differs from the exact one by at most the maximum
+ * error. The snapped points and their index are kept for every feature, so
+ * dense geometries are reduced only once.
+ *
+ * The maximum error is taken from a MaxError parameter or, if there is none,
+ * from the one given when constructing the distance. With a maximum error of
+ * zero, the exact distance is computed.
+ *
+ * @author Javier Beltran
+ */
+public class ApproximateHausdorffDistance implements BindableDistanceMeasure, LimitedDistanceMeasure {
+
+    private final double maxError;
+    private final IndexedHausdorffDistance exactDistance = new IndexedHausdorffDistance();
+    private final Map<Clusterable, Snapped> snapped =
+            Collections.synchronizedMap(new WeakHashMap<Clusterable, Snapped>());
+
+    /**
+     * Creates an approximate hausdorff distance whose maximum error must be
+     * given as a parameter, or it computes the exact distance otherwise.
+     */
+    public ApproximateHausdorffDistance() {
+        this(0);
+    }
+
+    /**
+     * Creates an approximate hausdorff distance with a default maximum error.
+     *
+     * @param maxError the maximum absolute error, when there is no MaxError
+     *            parameter.
+     */
+    public ApproximateHausdorffDistance(double maxError) {
+        this.maxError = new MaxError(maxError).getError();
+    }
+
+    /**
+     * Computes an approximation of the Hausdorff Distance between features a
+     * and b, with an absolute error not greater than the maximum error.
+     *
+     * @param a the first feature.
+     * @param b the second feature.
+     * @param params a list of parameters. Should contain the comparing one,
+     *            and may contain a MaxError.
+     * @return the approximate distance between a and b, with double precision.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (!(attr instanceof GeomAttr)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double error = error(params);
+        if (error == 0) {
+            return exactDistance.distance(a, b, params);
+        }
+        return approximateDistance(a, b, error / Math.sqrt(2), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Computes an approximation of the Hausdorff Distance between features a
+     * and b if it is not greater than a limit, stopping once the approximate
+     * distance is known to be greater.
+     *
+     * @param a the first feature.
+     * @param b the second feature.
+     * @param limit the greatest distance that matters.
+     * @param params a list of parameters. Should contain the comparing one,
+     *            and may contain a MaxError.
+     * @return the approximate distance between a and b if it is not greater
+     *         than limit, or a value greater than limit otherwise.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (!(attr instanceof GeomAttr)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double error = error(params);
+        if (error == 0) {
+            return exactDistance.distanceUpTo(a, b, limit, params);
+        }
+        return approximateDistance(a, b, error / Math.sqrt(2), limit);
+    }
+
+    /**
+     * Resolves the attribute to compare and the maximum error, so that the
+     * bound distance computes the approximate distance without looking them
+     * up again.
+     *
+     * @param params a list of parameters. Should contain the comparing one,
+     *            and may contain a MaxError.
+     * @return the bound distance.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    @Override
+    public BoundDistance bind(Parameter... params) throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (!(attr instanceof GeomAttr)) {
+            return BoundDistance.infinite();
+        }
+        double error = error(params);
+        if (error == 0) {
+            return exactDistance.bind(params);
+        }
+        final double cell = error / Math.sqrt(2);
+        return new BoundDistance() {
+            @Override
+            public double distance(Clusterable a, Clusterable b) {
+                return approximateDistance(a, b, cell, Double.POSITIVE_INFINITY);
+            }
+
+            @Override
+            public double distanceUpTo(Clusterable a, Clusterable b, double limit) {
+                return approximateDistance(a, b, cell, limit);
+            }
+        };
+    }
+
+    /**
+     * Retrieves the maximum error of a list of parameters.
+     *
+     * @param params a list of parameters, that may contain a MaxError.
+     * @return the maximum error of the MaxError parameter, or the default one
+     *         if there is none.
+     */
+    private double error(Parameter[] params) throws ParameterNotFoundException {
+        return hasParam(params, MaxError.class)
+                ? ((MaxError) getParam(params, MaxError.class)).getError() : maxError;
+    }
+
+    /**
+     * Computes the approximate distance between features a and b, snapping
+     * their points to a grid, and stopping once it is known to be greater than
+     * a limit.
+     *
+     * @param a the first feature.
+     * @param b the second feature.
+     * @param cell the size of the grid cells.
+     * @param limit the greatest distance that matters.
+     * @return the approximate distance between a and b, with double precision,
+     *         or a value greater than limit if the distance is greater.
+     */
+    private double approximateDistance(Clusterable a, Clusterable b, double cell, double limit) {
+        if (!a.isComparableWith(b)) {
+            /*
+             * Features of distinct type are incomparable, so their distance is
+             * set to infinity.
+             */
+            return Double.POSITIVE_INFINITY;
+        } else if (a.isSame(b)) {
+            return 0.0;
+        }
+
+        Snapped snappedA = snap(a, cell);
+        Snapped snappedB = snap(b, cell);
+        double ab = exactDistance.directedDistance(snappedA.points, snappedB.index, limit);
+        if (ab > limit) {
+            return ab;
+        }
+        return Math.max(ab, exactDistance.directedDistance(snappedB.points, snappedA.index, limit));
+    }
+
+    /**
+     * Retrieves the snapped points of a feature, snapping them if they were
+     * not snapped before to a grid of the same size.
+     *
+     * @param feature the feature.
+     * @param cell the size of the grid cells.
+     * @return the snapped points of the feature.
+     */
+    private Snapped snap(Clusterable feature, double cell) {
+        Snapped s = snapped.get(feature);
+        if (s == null || s.cell != cell) {
+            double[] points = feature.getAttribute(Clusterable.Property.PACKED_COORDINATES, double[].class);
+            s = new Snapped(cell, snap(points, cell));
+            snapped.put(feature, s);
+        }
+        return s;
+    }
+
+    /**
+     * Snaps some packed coordinates to the centers of the cells of a grid,
+     * dropping those that fall in the same cell as the previous one.
+     *
+     * @param points the x and y of every point, one after another.
+     * @param cell the size of the grid cells.
+     * @return the x and y of every snapped point, one after another.
+     */
+    private static double[] snap(double[] points, double cell) {
+        double[] snapped = new double[points.length];
+        int size = 0;
+        double lastX = Double.NaN;
+        double lastY = Double.NaN;
+        for (int i = 0; i < points.length / 2; i++) {
+            double cellX = Math.floor(points[2 * i] / cell);
+            double cellY = Math.floor(points[2 * i + 1] / cell);
+            if (cellX != lastX || cellY != lastY) {
+                snapped[2 * size] = (cellX + 0.5) * cell;
+                snapped[2 * size + 1] = (cellY + 0.5) * cell;
+                size++;
+                lastX = cellX;
+                lastY = cellY;
+            }
+        }
+        return Arrays.copyOf(snapped, 2 * size);
+    }
+
+    /**
+     * The points of a feature snapped to a grid, and their index.
+     */
+    private static class Snapped {
+
+        final double cell;
+        final double[] points;
+        final PointIndex index;
+
+        Snapped(double cell, double[] points) {
+            this.cell = cell;
+            this.points = points;
+            index = new PointIndex(points);
+        }
+    }
+
+}
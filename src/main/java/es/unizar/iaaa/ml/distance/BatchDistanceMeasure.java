@@ -0,0 +1,34 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * Interface for distance measures that can compute the distances from one
+ * element to many others in a single call, so the parameters are resolved and
+ * the element is prepared once for all of them. The results are written into
+ * an array given by the caller.
+ *
+ * DistanceMeasureBuilder.distances() works with any distance measure, using
+ * these methods when the measure implements them.
+ *
+ * @author Javier Beltran
+ */
+public interface BatchDistanceMeasure extends DistanceMeasure {
+
+	/**
+	 * Computes the distances from one element to every element of a list.
+	 * 
+	 * @param a one element.
+	 * @param others the list of other elements.
+	 * @param out the array where the distance from a to the i-th element of
+	 *            others is written at position i.
+	 * @param params a list of parameters. Should contain the comparing one.
+	 */
+    void distances(Clusterable a, List<Clusterable> others, double[] out, Parameter... params)
+            throws ParameterNotFoundException;
+
+}
@@ -0,0 +1,28 @@
+package es.unizar.iaaa.ml.distance;
+
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * Interface for distance measures that can resolve their parameters once,
+ * before computing many distances with them, instead of looking them up in
+ * every call.
+ *
+ * DistanceMeasureBuilder.bind() works with any distance measure, using this
+ * method when the measure implements it.
+ *
+ * @author Javier Beltran
+ */
+public interface BindableDistanceMeasure extends DistanceMeasure {
+
+	/**
+	 * Resolves the parameters of this distance measure.
+	 * 
+	 * @param params a list of parameters. Should contain the comparing one.
+	 * @return a distance measure that computes the same distances as this one
+	 *         with the given parameters.
+	 * @throws ParameterNotFoundException when a required parameter is missing.
+	 */
+    BoundDistance bind(Parameter... params) throws ParameterNotFoundException;
+
+}
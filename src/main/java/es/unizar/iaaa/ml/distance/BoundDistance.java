@@ -0,0 +1,156 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A bound distance is a distance measure whose parameters were resolved when
+ * it was created, so it does no parameter lookups while computing distances.
+ * The parameters given in every call are ignored. Bound distances are
+ * immutable, so they can be shared between threads.
+ *
+ * They are created with DistanceMeasureBuilder.bind().
+ *
+ * @author Javier Beltran
+ */
+public abstract class BoundDistance extends AbstractBatchDistance implements LimitedDistanceMeasure {
+
+    /**
+     * Computes the distance between features a and b, with the parameters
+     * this distance was bound to.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param params ignored.
+     * @return the distance between a and b.
+     */
+    @Override
+    public final double distance(Clusterable a, Clusterable b, Parameter... params)
+            throws ParameterNotFoundException {
+        return distance(a, b);
+    }
+
+    /**
+     * Computes the distance between features a and b, with the parameters
+     * this distance was bound to.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @return the distance between a and b.
+     */
+    public abstract double distance(Clusterable a, Clusterable b) throws ParameterNotFoundException;
+
+    /**
+     * Computes the distance between features a and b if it is not greater
+     * than a limit, with the parameters this distance was bound to.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance that matters.
+     * @param params ignored.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     */
+    @Override
+    public final double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        return distanceUpTo(a, b, limit);
+    }
+
+    /**
+     * Computes the distance between features a and b if it is not greater
+     * than a limit, with the parameters this distance was bound to. Unless a
+     * subclass stops early, the whole distance is computed.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance that matters.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     */
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit) throws ParameterNotFoundException {
+        return distance(a, b);
+    }
+
+    /**
+     * Checks if the distance between features a and b is not greater than a
+     * limit, with the parameters this distance was bound to.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance allowed.
+     * @return true, if the distance between a and b is not greater than limit.
+     */
+    public boolean isWithin(Clusterable a, Clusterable b, double limit) throws ParameterNotFoundException {
+        return distanceUpTo(a, b, limit) <= limit;
+    }
+
+    @Override
+    public void distances(Clusterable a, List<Clusterable> others, double[] out,
+            Parameter... params) throws ParameterNotFoundException {
+        for (int j = 0; j < others.size(); j++) {
+            out[j] = distance(a, others.get(j));
+        }
+    }
+
+    /**
+     * Creates a bound distance that is infinite between any features, for
+     * measures bound to attributes they cannot compare.
+     *
+     * @return the bound distance.
+     */
+    static BoundDistance infinite() {
+        return new BoundDistance() {
+            @Override
+            public double distance(Clusterable a, Clusterable b) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public void distances(Clusterable a, List<Clusterable> others, double[] out, Parameter... params) {
+                Arrays.fill(out, 0, others.size(), Double.POSITIVE_INFINITY);
+            }
+        };
+    }
+
+    /**
+     * A bound distance for measures that cannot resolve their parameters in
+     * advance, which keeps the parameters and passes them in every call.
+     */
+    static class Delegating extends BoundDistance {
+
+        private final DistanceMeasure distance;
+        private final Parameter[] params;
+
+        Delegating(DistanceMeasure distance, Parameter... params) {
+            this.distance = distance;
+            this.params = params.clone();
+        }
+
+        @Override
+        public double distance(Clusterable a, Clusterable b) throws ParameterNotFoundException {
+            return distance.distance(a, b, params);
+        }
+
+        @Override
+        public double distanceUpTo(Clusterable a, Clusterable b, double limit) throws ParameterNotFoundException {
+            return DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params);
+        }
+
+        @Override
+        public boolean isWithin(Clusterable a, Clusterable b, double limit) throws ParameterNotFoundException {
+            return DistanceMeasureBuilder.isWithin(distance, a, b, limit, params);
+        }
+
+        @Override
+        public void distances(Clusterable a, List<Clusterable> others, double[] out, Parameter... ignored)
+                throws ParameterNotFoundException {
+            DistanceMeasureBuilder.distances(distance, a, others, out, params);
+        }
+    }
+
+}
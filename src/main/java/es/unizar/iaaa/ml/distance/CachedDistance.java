@@ -0,0 +1,273 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * A CachedDistance decorates a distance measure, remembering the distances
+ * between the features of a list so that each pair is computed only once. The
+ * features are identified by their position in the list, and the decorated
+ * measure must be symmetric, so the distance from a to b is also used as the
+ * distance from b to a.
+ *
+ * If the whole triangular matrix of distances fits in the memory budget, it is
+ * kept in a packed array. Otherwise, the most recently used distances are kept
+ * in a cache split in segments, so that threads using different segments do
+ * not wait for each other.
+ *
+ * The distances are only remembered for the parameters passed in the first
+ * call. Calls with other parameters, or with features out of the list, are
+ * delegated without being cached. Distances computed up to a limit are only
+ * remembered when they are within the limit, as otherwise they are not exact.
+ *
+ * @author Javier Beltran
+ */
+public class CachedDistance implements LimitedDistanceMeasure {
+
+    /** Default memory budget of the cache, in bytes */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /* Approximate size of a cached distance in a map, with its boxed key and value */
+    private static final int ENTRY_BYTES = 80;
+    private static final int SEGMENTS = 16;
+
+    private final DistanceMeasure distance;
+    private final Map<Clusterable, Integer> positions;
+    private final long size;
+    private final AtomicLongArray matrix;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Parameter[] cachedParams;
+
+    /**
+     * Creates a cached distance for a list of features, with the default
+     * memory budget.
+     *
+     * @param distance the distance measure to be cached.
+     * @param features the features whose distances are cached.
+     */
+    public CachedDistance(DistanceMeasure distance, List<Clusterable> features) {
+        this(distance, features, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cached distance for a list of features.
+     *
+     * @param distance the distance measure to be cached.
+     * @param features the features whose distances are cached.
+     * @param maxBytes the approximate memory budget of the cache, in bytes.
+     */
+    public CachedDistance(DistanceMeasure distance, List<Clusterable> features, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must be non-negative");
+        }
+        this.distance = distance;
+        size = features.size();
+        positions = new IdentityHashMap<>(features.size());
+        for (int i = 0; i < features.size(); i++) {
+            positions.put(features.get(i), i);
+        }
+
+        long pairs = size * (size + 1) / 2;
+        if (pairs * 8 <= maxBytes && pairs <= Integer.MAX_VALUE) {
+            matrix = new AtomicLongArray((int) pairs);
+            segments = null;
+        } else {
+            matrix = null;
+            segments = new Segment[SEGMENTS];
+            int entries = (int) Math.min(Integer.MAX_VALUE, maxBytes / ENTRY_BYTES / SEGMENTS);
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(entries);
+            }
+        }
+    }
+
+    /**
+     * Computes the distance between features a and b, or retrieves it if it
+     * was computed before.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param params the parameters for the decorated distance.
+     * @return the distance between a and b.
+     */
+    public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
+        Integer i = positions.get(a);
+        Integer j = positions.get(b);
+        if (i == null || j == null || !sameParams(params)) {
+            return distance.distance(a, b, params);
+        }
+
+        long key = key(i, j);
+        long stored = get(key);
+        if (stored != 0) {
+            hits.incrementAndGet();
+            return Double.longBitsToDouble(~stored);
+        }
+
+        misses.incrementAndGet();
+        double d = distance.distance(a, b, params);
+        put(key, d);
+        return d;
+    }
+
+    /**
+     * Computes the distance between features a and b if it is not greater
+     * than a limit, or retrieves it if it was computed before.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance that matters.
+     * @param params the parameters for the decorated distance.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        Integer i = positions.get(a);
+        Integer j = positions.get(b);
+        if (i == null || j == null || !sameParams(params)) {
+            return DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params);
+        }
+
+        long key = key(i, j);
+        long stored = get(key);
+        if (stored != 0) {
+            hits.incrementAndGet();
+            return Double.longBitsToDouble(~stored);
+        }
+
+        misses.incrementAndGet();
+        double d = DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params);
+        if (d <= limit) {
+            put(key, d);
+        }
+        return d;
+    }
+
+    /**
+     * Retrieves the number of distances that were found in the cache.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of distances that had to be computed because they
+     * were not found in the cache.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Checks if some parameters are those whose distances are cached. The
+     * first parameters checked become the cached ones.
+     *
+     * @param params the parameters of a call.
+     * @return true, if the distances with these parameters are cached.
+     */
+    private boolean sameParams(Parameter[] params) {
+        Parameter[] cached = cachedParams;
+        if (cached == null) {
+            synchronized (this) {
+                if (cachedParams == null) {
+                    cachedParams = params.clone();
+                }
+                cached = cachedParams;
+            }
+        }
+        return Arrays.equals(cached, params);
+    }
+
+    /**
+     * Computes the key of a pair. The pair is stored once, with the lowest
+     * position first.
+     */
+    private static long key(int i, int j) {
+        return i <= j ? pair(i, j) : pair(j, i);
+    }
+
+    /**
+     * Retrieves the stored value of a pair. Distances are stored complemented,
+     * so that a missing one is read as 0.
+     */
+    private long get(long key) {
+        return matrix != null ? matrix.get((int) key) : segment(key).get(key);
+    }
+
+    /**
+     * Stores the distance of a pair.
+     */
+    private void put(long key, double d) {
+        if (matrix != null) {
+            matrix.lazySet((int) key, ~Double.doubleToLongBits(d));
+        } else {
+            segment(key).put(key, ~Double.doubleToLongBits(d));
+        }
+    }
+
+    /**
+     * Computes the position of a pair in the packed triangular matrix.
+     *
+     * @param i the lowest position of the pair.
+     * @param j the highest position of the pair.
+     * @return the position of the pair.
+     */
+    private static long pair(long i, long j) {
+        return j * (j + 1) / 2 + i;
+    }
+
+    /**
+     * Selects the segment where a pair is cached.
+     */
+    private Segment segment(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * A segment of the cache, that keeps the most recently used distances of
+     * the pairs assigned to it.
+     */
+    private static class Segment {
+
+        private final LinkedHashMap<Long, Long> map;
+
+        Segment(final int maxEntries) {
+            map = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized long get(long key) {
+            Long value = map.get(key);
+            return value == null ? 0 : value;
+        }
+
+        synchronized void put(long key, long value) {
+            map.put(key, value);
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package es.unizar.iaaa.ml.distance;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import es.unizar.iaaa.ml.adapter.Clusterable;
@@ -11,16 +13,34 @@ import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
  * measures. That is, it's calculated as d = d1*w1 + d2*w2 + d3*w3..., where the
  * user specifies the distances d1..dn and weights w1..wn.
  * 
+ * When only distances up to a limit matter, distanceUpTo() computes the
+ * cheapest measures first and stops as soon as their weighted sum exceeds the
+ * limit, as the remaining ones can only raise it. Every measure is also given
+ * the part of the limit left, so that it can stop early too.
+ * 
  * @author Javier Beltran
  */
-public class CombinedDistance implements DistanceMeasure {
+public class CombinedDistance extends AbstractBatchDistance
+		implements BindableDistanceMeasure, LimitedDistanceMeasure {
 
-	private List<DistanceMeasure> distances;
-	private List<Double> weights;
+	private final DistanceMeasure[] distances;
+	private final double[] weights;
+	private final int[] order;
+	private final boolean increasing;
 	
 	public CombinedDistance(List<DistanceMeasure> distances, List<Double> weights) {
-		this.distances = distances;
-		this.weights = weights;
+		if (distances.size() != weights.size()) {
+			throw new IllegalArgumentException("There must be a weight for every distance");
+		}
+		this.distances = distances.toArray(new DistanceMeasure[distances.size()]);
+		this.weights = new double[weights.size()];
+		boolean nonNegative = true;
+		for (int i=0; i<this.weights.length; i++) {
+			this.weights[i] = weights.get(i);
+			nonNegative &= this.weights[i] >= 0;
+		}
+		this.increasing = nonNegative;
+		this.order = cheapestFirst(this.distances);
 	}
 	
 	/**
@@ -34,10 +54,239 @@ public class CombinedDistance implements DistanceMeasure {
 	 */
 	public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
 		double dist = 0;
-		for (int i=0; i<distances.size(); i++) {
-			dist += distances.get(i).distance(a, b, params[i]) * weights.get(i);
+		for (int i=0; i<distances.length; i++) {
+			dist += distances[i].distance(a, b, params[i]) * weights[i];
+		}
+		return dist;
+	}
+	
+	/**
+	 * Computes the combined distance between features a and b if it is not
+	 * greater than a limit. The distance measures are computed from the
+	 * cheapest to the most expensive, and once their weighted sum exceeds the
+	 * limit the rest are skipped. If any weight is negative, the sum may
+	 * decrease, so every measure is computed in full.
+	 * 
+	 * @param a one feature.
+	 * @param b another feature.
+	 * @param limit the greatest distance that matters.
+	 * @param params the parameters for the algorithm.
+	 * @return the combined distance between a and b if it is not greater than
+	 *         limit, or a value greater than limit otherwise.
+	 */
+	@Override
+	public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+			throws ParameterNotFoundException {
+		if (!increasing) {
+			return distance(a, b, params);
+		}
+		return cheapestFirstUpTo(distances, weights, order, a, b, limit, params);
+	}
+	
+	/**
+	 * Computes the combined distance from feature a to every feature of a
+	 * list, computing every distance measure in a batch.
+	 * 
+	 * @param a one feature.
+	 * @param others the list of other features.
+	 * @param out the array where the distances are written.
+	 * @param params the parameters for the algorithm.
+	 */
+	@Override
+	public void distances(Clusterable a, List<Clusterable> others, double[] out,
+			Parameter... params) throws ParameterNotFoundException {
+		double[] partial = new double[others.size()];
+		Arrays.fill(out, 0, others.size(), 0);
+		for (int i=0; i<distances.length; i++) {
+			DistanceMeasureBuilder.distances(distances[i], a, others, partial, params[i]);
+			for (int j=0; j<others.size(); j++) {
+				out[j] += partial[j] * weights[i];
+			}
+		}
+	}
+	
+	/**
+	 * Binds every distance measure to its parameter, so that the bound
+	 * distance computes the combined distance without looking them up again.
+	 * 
+	 * @param params the parameters for the algorithm, one per distance measure.
+	 * @return the bound distance.
+	 * @throws ParameterNotFoundException when a distance measure misses a
+	 *             required parameter.
+	 */
+	@Override
+	public Bound bind(Parameter... params) throws ParameterNotFoundException {
+		BoundDistance[] bound = new BoundDistance[distances.length];
+		for (int i=0; i<distances.length; i++) {
+			bound[i] = DistanceMeasureBuilder.bind(distances[i], params[i]);
+		}
+		return new Bound(bound, this);
+	}
+	
+	/**
+	 * Computes a weighted sum of distance measures from the cheapest to the
+	 * most expensive, stopping as soon as it exceeds a limit. Every measure is
+	 * given the part of the limit left. The weights must not be negative.
+	 * 
+	 * @param distances the distance measures.
+	 * @param weights the weight of every distance measure.
+	 * @param order the positions of the measures, from the cheapest.
+	 * @param a one feature.
+	 * @param b another feature.
+	 * @param limit the greatest distance that matters.
+	 * @param params the parameter of every distance measure.
+	 * @return the weighted sum if it is not greater than limit, or a value
+	 *         greater than limit otherwise.
+	 */
+	private static double cheapestFirstUpTo(DistanceMeasure[] distances, double[] weights, int[] order,
+			Clusterable a, Clusterable b, double limit, Parameter[] params) throws ParameterNotFoundException {
+		double[] terms = new double[distances.length];
+		double partial = 0;
+		for (int k=0; k<order.length; k++) {
+			int i = order[k];
+			double remaining = remaining(limit, partial, weights[i]);
+			double d = DistanceMeasureBuilder.distanceUpTo(distances[i], a, b, remaining, params[i]);
+			terms[i] = d * weights[i];
+			partial += terms[i];
+			if (d > remaining) {
+				return exceeded(partial, limit);
+			} else if (partial > limit && k < order.length - 1) {
+				return partial;
+			}
+		}
+		return sum(terms);
+	}
+	
+	/**
+	 * Computes the greatest distance of a measure that keeps the weighted sum
+	 * within a limit.
+	 */
+	private static double remaining(double limit, double partial, double weight) {
+		return weight > 0 ? (limit - partial) / weight : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Returns a weighted sum, that is known to exceed a limit, ensuring that
+	 * it is greater than the limit despite rounding.
+	 */
+	private static double exceeded(double partial, double limit) {
+		return Math.max(partial, Math.nextUp(limit));
+	}
+	
+	/**
+	 * Adds some weighted distances in their original order, so that the
+	 * result does not depend on the order they were computed.
+	 */
+	private static double sum(double[] terms) {
+		double dist = 0;
+		for (double term : terms) {
+			dist += term;
 		}
 		return dist;
 	}
 	
+	/**
+	 * Sorts the positions of some distance measures from the cheapest to the
+	 * most expensive, keeping the given order between measures of similar
+	 * cost.
+	 */
+	private static int[] cheapestFirst(final DistanceMeasure[] distances) {
+		Integer[] positions = new Integer[distances.length];
+		for (int i=0; i<positions.length; i++) {
+			positions[i] = i;
+		}
+		Arrays.sort(positions, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return Integer.compare(cost(distances[i]), cost(distances[j]));
+			}
+		});
+		int[] order = new int[positions.length];
+		for (int i=0; i<order.length; i++) {
+			order[i] = positions[i];
+		}
+		return order;
+	}
+	
+	/**
+	 * Estimates the relative cost of computing a distance measure. Measures
+	 * on single values are the cheapest, and measures on every point of the
+	 * geometries the most expensive.
+	 */
+	private static int cost(DistanceMeasure distance) {
+		if (distance instanceof AbsoluteDifferenceDistance || distance instanceof EuclideanDistance) {
+			return 0;
+		} else if (distance instanceof ApproximateHausdorffDistance) {
+			return 1;
+		} else if (distance instanceof IndexedHausdorffDistance) {
+			return 2;
+		} else if (distance instanceof ExactHausdorffDistance) {
+			return 3;
+		} else {
+			return 4;
+		}
+	}
+	
+	/**
+	 * A combined distance whose distance measures are bound.
+	 */
+	public static class Bound extends BoundDistance {
+		
+		private final BoundDistance[] distances;
+		private final double[] weights;
+		private final int[] order;
+		private final boolean increasing;
+		/* Bound measures ignore their parameters */
+		private final Parameter[] unused;
+		
+		private Bound(BoundDistance[] distances, CombinedDistance combined) {
+			this.distances = distances;
+			this.unused = new Parameter[distances.length];
+			this.weights = combined.weights;
+			this.order = combined.order;
+			this.increasing = combined.increasing;
+		}
+		
+		@Override
+		public double distance(Clusterable a, Clusterable b) throws ParameterNotFoundException {
+			double dist = 0;
+			for (int i=0; i<distances.length; i++) {
+				dist += distances[i].distance(a, b) * weights[i];
+			}
+			return dist;
+		}
+		
+		/**
+		 * Computes the combined distance between features a and b if it is
+		 * not greater than a limit, as CombinedDistance.distanceUpTo() does.
+		 * 
+		 * @param a one feature.
+		 * @param b another feature.
+		 * @param limit the greatest distance that matters.
+		 * @return the combined distance between a and b if it is not greater
+		 *         than limit, or a value greater than limit otherwise.
+		 */
+		@Override
+		public double distanceUpTo(Clusterable a, Clusterable b, double limit)
+				throws ParameterNotFoundException {
+			if (!increasing) {
+				return distance(a, b);
+			}
+			return cheapestFirstUpTo(distances, weights, order, a, b, limit, unused);
+		}
+		
+		@Override
+		public void distances(Clusterable a, List<Clusterable> others, double[] out,
+				Parameter... params) throws ParameterNotFoundException {
+			double[] partial = new double[others.size()];
+			Arrays.fill(out, 0, others.size(), 0);
+			for (int i=0; i<distances.length; i++) {
+				distances[i].distances(a, others, partial);
+				for (int j=0; j<others.size(); j++) {
+					out[j] += partial[j] * weights[i];
+				}
+			}
+		}
+	}
+	
 }
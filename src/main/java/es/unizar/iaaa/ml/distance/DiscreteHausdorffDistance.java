@@ -16,7 +16,7 @@ import static es.unizar.iaaa.ml.parameter.ParameterBuilder.getAttr;
  * 
  * @author Javier Beltran
  */
-public class DiscreteHausdorffDistance implements DistanceMeasure {
+public class DiscreteHausdorffDistance implements BindableDistanceMeasure, LimitedDistanceMeasure {
 
 	/**
 	 * Given two clusterable elements and a parameter to be used for the
@@ -30,8 +30,68 @@ public class DiscreteHausdorffDistance implements DistanceMeasure {
 	 */
     public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
     		getAttr(params, GeomAttr.class);
-            return JTS.discreteHausdorffDistance(
-                    a.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class),
-                    b.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class));
+            return distance(a, b);
+    }
+
+	/**
+	 * Given two clusterable elements and a parameter to be used for the
+	 * calculation, returns the discrete hausdorff distance between both
+	 * elements if it is not greater than a limit.
+	 * 
+	 * @param a one element.
+	 * @param b the other element.
+	 * @param limit the greatest distance that matters.
+	 * @param params a list of parameters. Should contain the comparing one.
+	 * @return the distance between a and b if it is not greater than limit, or
+	 *         a value greater than limit otherwise.
+	 */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        getAttr(params, GeomAttr.class);
+        return distanceUpTo(a, b, limit);
+    }
+
+	/**
+	 * Checks that a geometry attribute is given, so that the bound distance
+	 * computes the discrete hausdorff distance without looking it up again.
+	 * 
+	 * @param params a list of parameters. Should contain the comparing one.
+	 * @return the bound distance.
+	 */
+    @Override
+    public BoundDistance bind(Parameter... params) throws ParameterNotFoundException {
+        getAttr(params, GeomAttr.class);
+        return new BoundDistance() {
+            @Override
+            public double distance(Clusterable a, Clusterable b) {
+                return DiscreteHausdorffDistance.distance(a, b);
+            }
+
+            @Override
+            public double distanceUpTo(Clusterable a, Clusterable b, double limit) {
+                return DiscreteHausdorffDistance.distanceUpTo(a, b, limit);
+            }
+        };
+    }
+
+    /**
+     * Computes the discrete hausdorff distance between the geometries of two
+     * elements.
+     */
+    private static double distance(Clusterable a, Clusterable b) {
+        return JTS.discreteHausdorffDistance(
+                a.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class),
+                b.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class));
+    }
+
+    /**
+     * Computes the discrete hausdorff distance between the geometries of two
+     * elements if it is not greater than a limit.
+     */
+    private static double distanceUpTo(Clusterable a, Clusterable b, double limit) {
+        return JTS.discreteHausdorffDistance(
+                a.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class),
+                b.getAttribute(Clusterable.Property.REPRESENTATIVE_GEOMETRY, Geometry.class), limit);
     }
 }
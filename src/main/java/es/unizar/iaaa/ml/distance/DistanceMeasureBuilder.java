@@ -1,5 +1,7 @@
 package es.unizar.iaaa.ml.distance;
 
+import java.util.List;
+
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
@@ -29,6 +31,85 @@ public class DistanceMeasureBuilder {
         return new ExactHausdorffDistance();
     }
 
+    /**
+     * Creates an ExactHausdorffDistance object that traverses the points in
+     * an order drawn from a seed.
+     *
+     * @param seed the seed of the traversal order.
+     * @return an ExactHausdorffDistance object.
+     */
+    public static ExactHausdorffDistance exactHausdorff(long seed) {
+        return new ExactHausdorffDistance(seed);
+    }
+
+    /**
+     * Creates an IndexedHausdorffDistance object.
+     *
+     * @return an IndexedHausdorffDistance object.
+     */
+    public static IndexedHausdorffDistance indexedHausdorff() {
+        return new IndexedHausdorffDistance();
+    }
+
+    /**
+     * Creates an ApproximateHausdorffDistance object, whose maximum error is
+     * given as a MaxError parameter.
+     *
+     * @return an ApproximateHausdorffDistance object.
+     */
+    public static ApproximateHausdorffDistance approximateHausdorff() {
+        return new ApproximateHausdorffDistance();
+    }
+
+    /**
+     * Creates an ApproximateHausdorffDistance object with a default maximum
+     * error.
+     *
+     * @param maxError the maximum absolute error.
+     * @return an ApproximateHausdorffDistance object.
+     */
+    public static ApproximateHausdorffDistance approximateHausdorff(double maxError) {
+        return new ApproximateHausdorffDistance(maxError);
+    }
+
+    /**
+     * Creates a CachedDistance object that remembers the distances between
+     * the features of a list, with the default memory budget.
+     *
+     * @param distance the distance measure to be cached.
+     * @param features the features whose distances are cached.
+     * @return a CachedDistance object.
+     */
+    public static CachedDistance cached(DistanceMeasure distance, List<Clusterable> features) {
+        return new CachedDistance(distance, features);
+    }
+
+    /**
+     * Creates a CachedDistance object that remembers the distances between
+     * the features of a list.
+     *
+     * @param distance the distance measure to be cached.
+     * @param features the features whose distances are cached.
+     * @param maxBytes the approximate memory budget of the cache, in bytes.
+     * @return a CachedDistance object.
+     */
+    public static CachedDistance cached(DistanceMeasure distance, List<Clusterable> features, long maxBytes) {
+        return new CachedDistance(distance, features, maxBytes);
+    }
+
+    /**
+     * Creates a PrefilteredDistance object that compares the distances with
+     * limits by means of the envelopes of the features first. Only the exact,
+     * indexed and discrete hausdorff distances are prefiltered, and other
+     * measures are computed as they are.
+     *
+     * @param distance the hausdorff distance measure to be prefiltered.
+     * @return a PrefilteredDistance object.
+     */
+    public static PrefilteredDistance prefiltered(DistanceMeasure distance) {
+        return new PrefilteredDistance(distance);
+    }
+
     /**
      * Calculates the DiscreteHausdorffDistance between two features.
      *
@@ -49,4 +130,110 @@ public class DistanceMeasureBuilder {
         return exactHausdorff().distance(a, b, params);
     }
 
+    /**
+     * Calculates the IndexedHausdorffDistance between two features.
+     *
+     * @return the distance between features a and b.
+     */
+    public static double indexedHausdorffDistance(Clusterable a, Clusterable b, Parameter... params)
+    		throws ParameterNotFoundException {
+        return indexedHausdorff().distance(a, b, params);
+    }
+
+    /**
+     * Calculates the ApproximateHausdorffDistance between two features, with
+     * the maximum error given as a MaxError parameter.
+     *
+     * @return the distance between features a and b.
+     */
+    public static double approximateHausdorffDistance(Clusterable a, Clusterable b, Parameter... params)
+    		throws ParameterNotFoundException {
+        return approximateHausdorff().distance(a, b, params);
+    }
+
+    /**
+     * Calculates the distances from one feature to every feature of a list,
+     * in a single batch if the distance measure supports it.
+     *
+     * @param distance the distance measure.
+     * @param a one feature.
+     * @param others the list of other features.
+     * @param out the array where the distance to the i-th feature of others
+     *            is written at position i.
+     */
+    public static void distances(DistanceMeasure distance, Clusterable a, List<Clusterable> others, double[] out,
+            Parameter... params) throws ParameterNotFoundException {
+        if (distance instanceof BatchDistanceMeasure) {
+            ((BatchDistanceMeasure) distance).distances(a, others, out, params);
+        } else {
+            for (int j = 0; j < others.size(); j++) {
+                out[j] = distance.distance(a, others.get(j), params);
+            }
+        }
+    }
+
+    /**
+     * Calculates the distance between two features if it is not greater than
+     * a limit, stopping early if the distance measure supports it.
+     *
+     * @param distance the distance measure.
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance that matters.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     */
+    public static double distanceUpTo(DistanceMeasure distance, Clusterable a, Clusterable b, double limit,
+            Parameter... params) throws ParameterNotFoundException {
+        if (distance instanceof LimitedDistanceMeasure) {
+            return ((LimitedDistanceMeasure) distance).distanceUpTo(a, b, limit, params);
+        } else {
+            return distance.distance(a, b, params);
+        }
+    }
+
+    /**
+     * Checks if the distance between two features is not greater than a
+     * limit, stopping early if the distance measure supports it.
+     *
+     * @param distance the distance measure.
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance allowed.
+     * @return true, if the distance between a and b is not greater than limit.
+     */
+    public static boolean isWithin(DistanceMeasure distance, Clusterable a, Clusterable b, double limit,
+            Parameter... params) throws ParameterNotFoundException {
+        if (distance instanceof BoundDistance) {
+            return ((BoundDistance) distance).isWithin(a, b, limit);
+        } else if (distance instanceof PrefilteredDistance) {
+            return ((PrefilteredDistance) distance).isWithin(a, b, limit, params);
+        } else {
+            return distanceUpTo(distance, a, b, limit, params) <= limit;
+        }
+    }
+
+    /**
+     * Binds a distance measure to some parameters, resolving them once so
+     * that the distances computed afterwards do no parameter lookups.
+     * Measures that cannot resolve them in advance are wrapped so that the
+     * parameters are passed in every call, and bound distances are returned
+     * as they are.
+     *
+     * @param distance the distance measure.
+     * @param params a list of parameters. Should contain the comparing one.
+     * @return the bound distance.
+     * @throws ParameterNotFoundException when a required parameter is missing.
+     */
+    public static BoundDistance bind(DistanceMeasure distance, Parameter... params)
+            throws ParameterNotFoundException {
+        if (distance instanceof BoundDistance) {
+            return (BoundDistance) distance;
+        } else if (distance instanceof BindableDistanceMeasure) {
+            return ((BindableDistanceMeasure) distance).bind(params);
+        } else {
+            return new BoundDistance.Delegating(distance, params);
+        }
+    }
+
 }
@@ -1,6 +1,6 @@
 package es.unizar.iaaa.ml.distance;
 
-import com.vividsolutions.jts.geom.Point;
+import java.util.List;
 
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.parameter.Parameter;
@@ -14,7 +14,7 @@ import es.unizar.iaaa.ml.parameter.Parameter;
  *
  * @author Javier Beltran
  */
-public class EuclideanDistance implements DistanceMeasure {
+public class EuclideanDistance extends AbstractBatchDistance implements LimitedDistanceMeasure {
 
     /**
      * Computes the euclidean distance between features a and b.
@@ -29,8 +29,8 @@ public class EuclideanDistance implements DistanceMeasure {
             if (a.isSame(b)) {
                 return 0.0;
             } else {
-                return a.getAttribute(Clusterable.Property.REPRESENTATIVE_POINT, Point.class).
-                        distance(b.getAttribute(Clusterable.Property.REPRESENTATIVE_POINT, Point.class));
+                return distance(a.getAttribute(Clusterable.Property.PACKED_POINT, double[].class),
+                        b.getAttribute(Clusterable.Property.PACKED_POINT, double[].class));
             }
         } else {
             /*
@@ -41,4 +41,83 @@ public class EuclideanDistance implements DistanceMeasure {
         }
     }
 
+    /**
+     * Computes the euclidean distance between features a and b. It is too
+     * cheap to stop early, so it is always computed in full, but without
+     * comparing the geometries of both features.
+     *
+     * @param a a feature.
+     * @param b a feature.
+     * @param limit ignored.
+     * @return the distance between a and b, with double precision.
+     */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params) {
+        if (!a.isComparableWith(b)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return pointDistance(a.getAttribute(Clusterable.Property.PACKED_POINT, double[].class), a, b);
+    }
+
+    /**
+     * Computes the euclidean distances from feature a to every feature of a
+     * list, retrieving the point of a only once.
+     *
+     * @param a a feature.
+     * @param others a list of features.
+     * @param out the array where the distances are written.
+     */
+    @Override
+    public void distances(Clusterable a, List<Clusterable> others, double[] out, Parameter... params) {
+        /* The point of a is only retrieved once it is comparable, as it may have no geometry */
+        double[] pointA = null;
+        for (int j = 0; j < others.size(); j++) {
+            Clusterable b = others.get(j);
+            if (!a.isComparableWith(b)) {
+                out[j] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            if (pointA == null) {
+                pointA = a.getAttribute(Clusterable.Property.PACKED_POINT, double[].class);
+            }
+            out[j] = pointDistance(pointA, a, b);
+        }
+    }
+
+    /**
+     * Computes the euclidean distance between features a and b, that are
+     * known to be comparable, given the point of a, without comparing their
+     * geometries unless it is needed.
+     *
+     * @param pointA the packed point of a.
+     * @param a a feature.
+     * @param b a feature comparable with a.
+     * @return the distance between a and b, with double precision.
+     */
+    private static double pointDistance(double[] pointA, Clusterable a, Clusterable b) {
+        /*
+         * The same geometries have the same point, so their distance is
+         * already 0 unless their coordinates are not finite.
+         */
+        double d = distance(pointA, b.getAttribute(Clusterable.Property.PACKED_POINT, double[].class));
+        return Double.isNaN(d) && a.isSame(b) ? 0.0 : d;
+    }
+
+    /**
+     * Computes the euclidean distance between two packed points.
+     *
+     * @param pointA the x and y of a point, or nothing if it is empty.
+     * @param pointB the x and y of another point, or nothing if it is empty.
+     * @return the distance between both points.
+     */
+    private static double distance(double[] pointA, double[] pointB) {
+        if (pointA.length == 0 || pointB.length == 0) {
+            /* As in JTS, the distance to an empty geometry is zero */
+            return 0.0;
+        }
+        double dx = pointA[0] - pointB[0];
+        double dy = pointA[1] - pointB[1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
 }
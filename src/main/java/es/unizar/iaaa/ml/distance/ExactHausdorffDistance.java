@@ -1,8 +1,6 @@
 package es.unizar.iaaa.ml.distance;
 
-import com.vividsolutions.jts.geom.Coordinate;
-
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import es.unizar.iaaa.ml.adapter.Clusterable;
@@ -17,9 +15,46 @@ import static es.unizar.iaaa.ml.parameter.ParameterBuilder.getAttr;
  * An implementation of the HausdorffDistance. Unlike DiscreteHausdorffDistance, 
  * whose results are approximate, this implementation gives exact results.
  *
+ * Each set of points is traversed in a scattered order, so the early break is
+ * reached soon. The order depends only on the number of points, so it needs no
+ * random work per call and the same distances are computed in every run. A
+ * seed can be given to draw a different, but also reproducible, order.
+ *
+ * When only distances up to a limit matter, the traversal stops as soon as a
+ * point farther than the limit is found. Pairs whose envelopes are too far
+ * apart can be rejected beforehand by decorating the measure with a
+ * PrefilteredDistance.
+ *
  * @author Javier Beltran
  */
-public class ExactHausdorffDistance implements DistanceMeasure {
+public class ExactHausdorffDistance extends AbstractBatchDistance
+        implements BindableDistanceMeasure, LimitedDistanceMeasure {
+
+    /* Fraction of the size used as stride, for a golden ratio traversal */
+    private static final double GOLDEN_FRACTION = 0.6180339887498949;
+
+    private final boolean seeded;
+    private final long seed;
+
+    /**
+     * Creates an exact hausdorff distance that traverses the points in the
+     * default order.
+     */
+    public ExactHausdorffDistance() {
+        seeded = false;
+        seed = 0;
+    }
+
+    /**
+     * Creates an exact hausdorff distance that traverses the points in an
+     * order drawn from a seed.
+     *
+     * @param seed the seed of the traversal order.
+     */
+    public ExactHausdorffDistance(long seed) {
+        seeded = true;
+        this.seed = seed;
+    }
 
     /**
      * Computes the Hausdorff Distance between features a and b, defined as the maximum between the
@@ -33,51 +68,114 @@ public class ExactHausdorffDistance implements DistanceMeasure {
     public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
     	Attribute attr = getAttr(params, Attribute.class);
     	if (attr instanceof GeomAttr) {
-    		return Math.max(directedDistance(a, b), directedDistance(b, a));
+    		return Math.max(directedDistance(a, b, Double.POSITIVE_INFINITY),
+    				directedDistance(b, a, Double.POSITIVE_INFINITY));
     	} else return Double.POSITIVE_INFINITY;
     }
 
     /**
-     * Computes the Directed Hausdorff Distance from feature a to b.
+     * Computes the Hausdorff Distance from feature a to every feature of a
+     * list, resolving the attribute only once.
+     *
+     * @param a the first feature.
+     * @param others the list of other features.
+     * @param out the array where the distances are written.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    @Override
+    public void distances(Clusterable a, List<Clusterable> others, double[] out,
+            Parameter... params) throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (attr instanceof GeomAttr) {
+            for (int j = 0; j < others.size(); j++) {
+                Clusterable b = others.get(j);
+                out[j] = Math.max(directedDistance(a, b, Double.POSITIVE_INFINITY),
+                        directedDistance(b, a, Double.POSITIVE_INFINITY));
+            }
+        } else {
+            Arrays.fill(out, 0, others.size(), Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Resolves the attribute to compare, so that the bound distance computes
+     * the Hausdorff Distance without looking it up again.
+     *
+     * @param params a list of parameters. Should contain the comparing one.
+     * @return the bound distance.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    @Override
+    public BoundDistance bind(Parameter... params) throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (!(attr instanceof GeomAttr)) {
+            return BoundDistance.infinite();
+        }
+        return new BoundDistance() {
+            @Override
+            public double distance(Clusterable a, Clusterable b) {
+                return Math.max(directedDistance(a, b, Double.POSITIVE_INFINITY),
+                        directedDistance(b, a, Double.POSITIVE_INFINITY));
+            }
+
+            @Override
+            public double distanceUpTo(Clusterable a, Clusterable b, double limit) {
+                return hausdorffUpTo(a, b, limit);
+            }
+        };
+    }
+
+    /**
+     * Computes the Hausdorff Distance between features a and b if it is not
+     * greater than a limit.
+     *
+     * @param a the first feature.
+     * @param b the second feature.
+     * @param limit the greatest distance that matters.
+     * @param params a list of parameters. Should contain the comparing one.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     * @throws ParameterNotFoundException when no attribute is specified.
+     */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        if (attr instanceof GeomAttr) {
+            return hausdorffUpTo(a, b, limit);
+        } else {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Computes the Hausdorff Distance between features a and b if it is not
+     * greater than a limit, once the attribute is known to be a geometry.
+     */
+    private double hausdorffUpTo(Clusterable a, Clusterable b, double limit) {
+        double ab = directedDistance(a, b, limit);
+        if (ab > limit) {
+            return ab;
+        }
+        return Math.max(ab, directedDistance(b, a, limit));
+    }
+
+    /**
+     * Computes the Directed Hausdorff Distance from feature a to b, stopping
+     * once it is known to be greater than a limit.
      *
      * @param a the origin feature.
      * @param b the destination feature.
-     * @return the distance from a to b, with double precision.
+     * @param limit the greatest distance that matters.
+     * @return the distance from a to b, with double precision, or a value
+     *         greater than limit if the distance is greater.
      */
-    private double directedDistance(Clusterable a, Clusterable b) {
+    private double directedDistance(Clusterable a, Clusterable b, double limit) {
         if (a.isComparableWith(b)) {
             if (a.isSame(b)) {
                 return 0.0;
             } else {
-                final List<Coordinate> pointsA = a.getAttributeList(Clusterable.Property.REPRESENTATIVE_COORDINATES, Coordinate.class);
-                final List<Coordinate> pointsB = b.getAttributeList(Clusterable.Property.REPRESENTATIVE_COORDINATES, Coordinate.class);
-                Collections.shuffle(pointsA);
-                Collections.shuffle(pointsB);
-
-                double cMax = 0.0;
-                for (Coordinate cA : pointsA) {
-                    double cMin = Double.POSITIVE_INFINITY;
-
-                    for (Coordinate cB : pointsB) {
-                        double d = cA.distance(cB);
-
-						/* Saves the minimum distance from cA to any cB */
-                        if (d < cMin) {
-                            cMin = d;
-                        }
-
-						/* Early Break */
-                        if (d < cMax) {
-                            break;
-                        }
-                    }
-
-					/* Saves the maximum of the minimum distances found */
-                    if (cMin > cMax) {
-                        cMax = cMin;
-                    }
-                }
-                return cMax;
+                return directedPointsDistance(a, b, limit);
             }
         } else {
 			/* 
@@ -88,4 +186,153 @@ public class ExactHausdorffDistance implements DistanceMeasure {
         }
     }
 
+    /**
+     * Computes the Directed Hausdorff Distance from the points of feature a to
+     * the points of feature b, once both are known to be comparable and not
+     * the same. The computation may stop once the distance is known to be
+     * greater than a limit.
+     *
+     * @param a the origin feature.
+     * @param b the destination feature.
+     * @param limit the greatest distance that matters.
+     * @return the distance from a to b, with double precision, or a value
+     *         greater than limit if the distance is greater.
+     */
+    protected double directedPointsDistance(Clusterable a, Clusterable b, double limit) {
+        double[] pointsA = a.getAttribute(Clusterable.Property.PACKED_COORDINATES, double[].class);
+        double[] pointsB = b.getAttribute(Clusterable.Property.PACKED_COORDINATES, double[].class);
+        return directedDistance(pointsA, pointsB, limit);
+    }
+
+    /**
+     * Computes the Directed Hausdorff Distance between two sets of packed
+     * coordinates. Both sets are traversed in a scattered order, so the early
+     * break is reached soon, without copying or shuffling the cached arrays.
+     *
+     * @param pointsA the x and y of every origin point, one after another.
+     * @param pointsB the x and y of every destination point, one after another.
+     * @param limit the greatest distance that matters.
+     * @return the distance from pointsA to pointsB, with double precision, or
+     *         a value greater than limit if the distance is greater.
+     */
+    private double directedDistance(double[] pointsA, double[] pointsB, double limit) {
+        int sizeA = pointsA.length / 2;
+        int sizeB = pointsB.length / 2;
+        if (sizeA == 0) {
+            return 0.0;
+        } else if (sizeB == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+		/* A start and a stride coprime with the size visit every point once */
+        int startB = start(sizeB);
+        int strideA = stride(sizeA);
+        int strideB = stride(sizeB);
+
+		/* Squared distances are compared, and only the result is square-rooted */
+        double limitSquared = limit * limit;
+        double cMax = 0.0;
+        int i = start(sizeA);
+        for (int visitedA = 0; visitedA < sizeA; visitedA++) {
+            double xA = pointsA[2 * i];
+            double yA = pointsA[2 * i + 1];
+            double cMin = Double.POSITIVE_INFINITY;
+
+            int j = startB;
+            for (int visitedB = 0; visitedB < sizeB; visitedB++) {
+                double dx = xA - pointsB[2 * j];
+                double dy = yA - pointsB[2 * j + 1];
+                double d = dx * dx + dy * dy;
+
+				/* Saves the minimum distance from the point of A to any point of B */
+                if (d < cMin) {
+                    cMin = d;
+                }
+
+				/* Early Break */
+                if (d < cMax) {
+                    break;
+                }
+
+                j += strideB;
+                if (j >= sizeB) {
+                    j -= sizeB;
+                }
+            }
+
+			/* Saves the maximum of the minimum distances found */
+            if (cMin > cMax) {
+                cMax = cMin;
+
+                /* Beyond the limit, the exact distance does not matter */
+                if (cMax > limitSquared && Math.sqrt(cMax) > limit) {
+                    break;
+                }
+            }
+
+            i += strideA;
+            if (i >= sizeA) {
+                i -= sizeA;
+            }
+        }
+        return Math.sqrt(cMax);
+    }
+
+    /**
+     * Selects the first position of the traversal of a set of points.
+     *
+     * @param size the number of points.
+     * @return zero, or a position drawn from the seed in seeded mode.
+     */
+    int start(int size) {
+        return seeded ? (int) ((mix(seed ^ size) >>> 1) % size) : 0;
+    }
+
+    /**
+     * Selects the stride of the traversal of a set of points. It is coprime
+     * with the size, so that stepping through the positions modulo that size
+     * visits all of them.
+     *
+     * @param size the number of points.
+     * @return a stride between 1 and size - 1, or 1 for the smallest sizes.
+     */
+    int stride(int size) {
+        if (size <= 2) {
+            return 1;
+        }
+        int stride;
+        if (seeded) {
+            stride = 1 + (int) ((mix(mix(seed) + size) >>> 1) % (size - 1));
+        } else {
+            /* Golden ratio steps spread the visited points all over the set */
+            stride = Math.max(1, (int) (size * GOLDEN_FRACTION));
+        }
+        while (gcd(stride, size) != 1) {
+            stride = stride % (size - 1) + 1;
+        }
+        return stride;
+    }
+
+    /**
+     * Scrambles the bits of a number, as the SplitMix64 generator does.
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Computes the greatest common divisor of two positive integers.
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
 }
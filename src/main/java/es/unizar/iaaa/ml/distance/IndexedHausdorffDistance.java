@@ -0,0 +1,109 @@
+package es.unizar.iaaa.ml.distance;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.util.PointIndex;
+
+/**
+ * An implementation of the exact HausdorffDistance for geometries with many
+ * points. Instead of comparing every point of a geometry with every point of
+ * the other one, the nearest point is searched in a KD-tree of the points of
+ * the other geometry, which prunes the parts of the tree whose bounding box is
+ * farther than the nearest point found so far. The tree is built once per
+ * feature and kept by it, so it pays off when every feature is compared many
+ * times, as it happens in clustering algorithms.
+ *
+ * The results are the same as those of ExactHausdorffDistance. Geometries with
+ * few points are compared without an index, as ExactHausdorffDistance does.
+ *
+ * @author Javier Beltran
+ */
+public class IndexedHausdorffDistance extends ExactHausdorffDistance {
+
+    /* Geometries with less points than this are not indexed */
+    private static final int MIN_INDEXED_POINTS = 64;
+
+    /**
+     * Creates an indexed hausdorff distance that traverses the points in the
+     * default order.
+     */
+    public IndexedHausdorffDistance() {
+        super();
+    }
+
+    /**
+     * Creates an indexed hausdorff distance that traverses the points in an
+     * order drawn from a seed.
+     *
+     * @param seed the seed of the traversal order.
+     */
+    public IndexedHausdorffDistance(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Computes the Directed Hausdorff Distance from the points of feature a to
+     * the points of feature b, searching the nearest point of b to every point
+     * of a in the index of b.
+     *
+     * @param a the origin feature.
+     * @param b the destination feature.
+     * @param limit the greatest distance that matters.
+     * @return the distance from a to b, with double precision, or a value
+     *         greater than limit if the distance is greater.
+     */
+    @Override
+    protected double directedPointsDistance(Clusterable a, Clusterable b, double limit) {
+        double[] pointsA = a.getAttribute(Clusterable.Property.PACKED_COORDINATES, double[].class);
+        double[] pointsB = b.getAttribute(Clusterable.Property.PACKED_COORDINATES, double[].class);
+        if (pointsB.length / 2 < MIN_INDEXED_POINTS) {
+            return super.directedPointsDistance(a, b, limit);
+        }
+        PointIndex indexB = b.getAttribute(Clusterable.Property.POINT_INDEX, PointIndex.class);
+        if (indexB == null) {
+            return super.directedPointsDistance(a, b, limit);
+        }
+        return directedDistance(pointsA, indexB, limit);
+    }
+
+    /**
+     * Computes the Directed Hausdorff Distance from a set of packed coordinates
+     * to the points of an index.
+     *
+     * @param pointsA the x and y of every origin point, one after another.
+     * @param indexB the index of the destination points.
+     * @param limit the greatest distance that matters.
+     * @return the distance from pointsA to indexB, with double precision, or a
+     *         value greater than limit if the distance is greater.
+     */
+    double directedDistance(double[] pointsA, PointIndex indexB, double limit) {
+        int sizeA = pointsA.length / 2;
+        if (sizeA == 0) {
+            return 0.0;
+        }
+        int strideA = stride(sizeA);
+
+        /*
+         * Once a point of b closer than the present maximum is found, the
+         * point of a cannot raise it, so the search stops there.
+         */
+        double limitSquared = limit * limit;
+        double cMax = 0.0;
+        int i = start(sizeA);
+        for (int visitedA = 0; visitedA < sizeA; visitedA++) {
+            double cMin = indexB.nearestDistanceSquared(pointsA[2 * i], pointsA[2 * i + 1], cMax);
+            if (cMin > cMax) {
+                cMax = cMin;
+                if (cMax > limitSquared && Math.sqrt(cMax) > limit) {
+                    break;
+                }
+            }
+
+            i += strideA;
+            if (i >= sizeA) {
+                i -= sizeA;
+            }
+        }
+        return Math.sqrt(cMax);
+    }
+
+}
@@ -0,0 +1,34 @@
+package es.unizar.iaaa.ml.distance;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+/**
+ * Interface for distance measures that can stop computing a distance as soon
+ * as it is known to be greater than a limit. Clustering algorithms often need
+ * only to know if a distance is within a radius, or if it is less than the
+ * best one found so far, so the exact value of greater distances is wasted.
+ *
+ * DistanceMeasureBuilder.distanceUpTo() and isWithin() work with any distance
+ * measure, using this method when the measure implements it.
+ *
+ * @author Javier Beltran
+ */
+public interface LimitedDistanceMeasure extends DistanceMeasure {
+
+	/**
+	 * Computes the distance between two clusterable elements if it is not
+	 * greater than a limit.
+	 * 
+	 * @param a one element.
+	 * @param b the other element.
+	 * @param limit the greatest distance that matters.
+	 * @param params a list of parameters. Should contain the comparing one.
+	 * @return the distance between a and b if it is not greater than limit, or
+	 *         a value greater than limit otherwise.
+	 */
+    double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException;
+
+}
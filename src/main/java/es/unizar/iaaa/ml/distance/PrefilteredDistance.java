@@ -0,0 +1,270 @@
+package es.unizar.iaaa.ml.distance;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Attribute;
+import es.unizar.iaaa.ml.parameter.GeomAttr;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.getAttr;
+
+/**
+ * A PrefilteredDistance decorates a hausdorff distance measure, comparing the
+ * distances with a limit by means of the envelopes of the features before
+ * computing them. The hausdorff distance between two geometries is never less
+ * than the greatest gap between the corresponding sides of their envelopes,
+ * and never more than the diagonal of the envelope of both. The decorated
+ * distance is only computed when these bounds do not decide the comparison.
+ *
+ * The lower bound lets distanceUpTo() reject distances, and both bounds let
+ * isWithin() accept or reject them. The number of comparisons, and how many
+ * of them were decided by the bounds alone, are counted.
+ *
+ * The bounds are only valid for the exact, indexed and discrete hausdorff
+ * distances between geometry attributes, so they are not used for other
+ * distance measures or attributes, or for features that are not comparable.
+ * The decorated distance is then computed as it is.
+ *
+ * @author Javier Beltran
+ */
+public class PrefilteredDistance implements BindableDistanceMeasure, LimitedDistanceMeasure {
+
+    private final DistanceMeasure distance;
+    private final boolean hausdorff;
+    private final AtomicLong comparisons = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+
+    /**
+     * Creates a prefiltered distance.
+     *
+     * @param distance the hausdorff distance measure to be prefiltered.
+     */
+    public PrefilteredDistance(DistanceMeasure distance) {
+        this.distance = distance;
+        this.hausdorff = supports(distance);
+    }
+
+    /**
+     * Checks if the bounds of the envelopes are valid for a distance measure,
+     * that is, if it is an exact, indexed or discrete hausdorff distance.
+     *
+     * @param distance the distance measure.
+     * @return true, if the comparisons can be decided by the bounds.
+     */
+    public static boolean supports(DistanceMeasure distance) {
+        return distance instanceof ExactHausdorffDistance || distance instanceof DiscreteHausdorffDistance;
+    }
+
+    /**
+     * Computes the distance between features a and b with the decorated
+     * distance, as there is no limit to compare it with.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param params the parameters for the decorated distance.
+     * @return the distance between a and b.
+     */
+    @Override
+    public double distance(Clusterable a, Clusterable b, Parameter... params) throws ParameterNotFoundException {
+        return distance.distance(a, b, params);
+    }
+
+    /**
+     * Computes the distance between features a and b if it is not greater
+     * than a limit, unless the envelopes prove that it is greater.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance that matters.
+     * @param params the parameters for the decorated distance.
+     * @return the distance between a and b if it is not greater than limit, or
+     *         a value greater than limit otherwise.
+     */
+    @Override
+    public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        if (!hausdorff || !isGeometry(params)) {
+            return DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params);
+        }
+        comparisons.incrementAndGet();
+        double lower = lowerBound(a, b);
+        if (lower > limit) {
+            resolved.incrementAndGet();
+            return lower;
+        }
+        return DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params);
+    }
+
+    /**
+     * Checks if the distance between features a and b is not greater than a
+     * limit, computing it only if the envelopes do not decide it.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance allowed.
+     * @param params the parameters for the decorated distance.
+     * @return true, if the distance between a and b is not greater than limit.
+     */
+    public boolean isWithin(Clusterable a, Clusterable b, double limit, Parameter... params)
+            throws ParameterNotFoundException {
+        if (!hausdorff || !isGeometry(params)) {
+            return DistanceMeasureBuilder.isWithin(distance, a, b, limit, params);
+        }
+        comparisons.incrementAndGet();
+        Boolean decided = decide(a, b, limit);
+        if (decided != null) {
+            resolved.incrementAndGet();
+            return decided;
+        }
+        return DistanceMeasureBuilder.isWithin(distance, a, b, limit, params);
+    }
+
+    /**
+     * Binds the decorated distance to some parameters. The bound distance
+     * keeps using the bounds, and counts its comparisons in this object.
+     *
+     * @param params the parameters for the decorated distance.
+     * @return the bound distance.
+     * @throws ParameterNotFoundException when a required parameter is missing.
+     */
+    @Override
+    public BoundDistance bind(Parameter... params) throws ParameterNotFoundException {
+        final BoundDistance bound = DistanceMeasureBuilder.bind(distance, params);
+        if (!hausdorff || !isGeometry(params)) {
+            return bound;
+        }
+        return new BoundDistance() {
+            @Override
+            public double distance(Clusterable a, Clusterable b) throws ParameterNotFoundException {
+                return bound.distance(a, b);
+            }
+
+            @Override
+            public double distanceUpTo(Clusterable a, Clusterable b, double limit)
+                    throws ParameterNotFoundException {
+                comparisons.incrementAndGet();
+                double lower = lowerBound(a, b);
+                if (lower > limit) {
+                    resolved.incrementAndGet();
+                    return lower;
+                }
+                return bound.distanceUpTo(a, b, limit);
+            }
+
+            @Override
+            public boolean isWithin(Clusterable a, Clusterable b, double limit) throws ParameterNotFoundException {
+                comparisons.incrementAndGet();
+                Boolean decided = decide(a, b, limit);
+                if (decided != null) {
+                    resolved.incrementAndGet();
+                    return decided;
+                }
+                return bound.isWithin(a, b, limit);
+            }
+        };
+    }
+
+    /**
+     * Retrieves the number of distances that were compared with a limit.
+     *
+     * @return the number of comparisons.
+     */
+    public long getComparisons() {
+        return comparisons.get();
+    }
+
+    /**
+     * Retrieves the number of comparisons that were decided by the envelopes
+     * alone, without computing the distance.
+     *
+     * @return the number of comparisons decided by the bounds.
+     */
+    public long getResolved() {
+        return resolved.get();
+    }
+
+    /**
+     * Retrieves the fraction of comparisons that were decided by the
+     * envelopes alone.
+     *
+     * @return the fraction of comparisons decided by the bounds, or 0 if there
+     *         were no comparisons.
+     */
+    public double getResolvedFraction() {
+        long total = comparisons.get();
+        return total == 0 ? 0.0 : (double) resolved.get() / total;
+    }
+
+    /**
+     * Checks if the bounds are valid for some parameters, that is, if the
+     * attribute compared by the hausdorff distances is a geometry.
+     */
+    private static boolean isGeometry(Parameter[] params) throws ParameterNotFoundException {
+        Attribute attr = getAttr(params, Attribute.class);
+        return attr instanceof GeomAttr;
+    }
+
+    /**
+     * Decides if the distance between two features is not greater than a
+     * limit by means of their envelopes.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @param limit the greatest distance allowed.
+     * @return true or false if the bounds decide it, or null otherwise.
+     */
+    private static Boolean decide(Clusterable a, Clusterable b, double limit) {
+        if (lowerBound(a, b) > limit) {
+            return false;
+        } else if (a.isComparableWith(b) && upperBound(a, b) <= limit) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * Computes a lower bound of the hausdorff distance between two features
+     * from their envelopes. Every side of an envelope touches a point of its
+     * feature, and that point is at least as far from the other feature as
+     * the corresponding sides of both envelopes are from each other.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @return the lower bound, or 0 if some envelope is unknown or empty.
+     */
+    static double lowerBound(Clusterable a, Clusterable b) {
+        Envelope envA = a.getAttribute(Clusterable.Property.ENVELOPE, Envelope.class);
+        Envelope envB = b.getAttribute(Clusterable.Property.ENVELOPE, Envelope.class);
+        if (envA == null || envB == null || envA.isNull() || envB.isNull()) {
+            return 0.0;
+        }
+        return Math.max(Math.max(Math.abs(envA.getMinX() - envB.getMinX()), Math.abs(envA.getMaxX() - envB.getMaxX())),
+                Math.max(Math.abs(envA.getMinY() - envB.getMinY()), Math.abs(envA.getMaxY() - envB.getMaxY())));
+    }
+
+    /**
+     * Computes an upper bound of the hausdorff distance between two features
+     * from their envelopes, as no point of a feature can be farther from a
+     * point of the other one than the diagonal of the envelope of both.
+     *
+     * @param a one feature.
+     * @param b another feature.
+     * @return the upper bound, or infinity if some envelope is unknown or
+     *         empty.
+     */
+    static double upperBound(Clusterable a, Clusterable b) {
+        Envelope envA = a.getAttribute(Clusterable.Property.ENVELOPE, Envelope.class);
+        Envelope envB = b.getAttribute(Clusterable.Property.ENVELOPE, Envelope.class);
+        if (envA == null || envB == null || envA.isNull() || envB.isNull()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double width = Math.max(envA.getMaxX(), envB.getMaxX()) - Math.min(envA.getMinX(), envB.getMinX());
+        double height = Math.max(envA.getMaxY(), envB.getMaxY()) - Math.min(envA.getMinY(), envB.getMinY());
+        return Math.sqrt(width * width + height * height);
+    }
+
+}
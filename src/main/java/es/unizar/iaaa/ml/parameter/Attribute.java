@@ -20,4 +20,22 @@ public abstract class Attribute extends Parameter {
 		return name;
 	}
 	
+	/**
+	 * Two attributes are equal if they are of the same class and have the
+	 * same name.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		String otherName = ((Attribute) other).name;
+		return name == null ? otherName == null : name.equals(otherName);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * getClass().hashCode() + (name == null ? 0 : name.hashCode());
+	}
+	
 }
@@ -0,0 +1,40 @@
+package es.unizar.iaaa.ml.parameter;
+
+/**
+ * A MaxError is a parameter that sets the maximum absolute error allowed to an
+ * approximate distance, in the units of the distance.
+ * 
+ * @author Javier Beltran
+ *
+ */
+public class MaxError extends Parameter {
+	
+	private double error;
+	
+	public MaxError(double error) {
+		if (!(error >= 0)) {
+			throw new IllegalArgumentException("Max error must be non-negative");
+		}
+		this.error = error;
+	}
+	
+	public double getError() {
+		return error;
+	}
+	
+	/**
+	 * Two max errors are equal if they allow the same error.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof MaxError
+				&& Double.compare(error, ((MaxError) other).error) == 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(error);
+		return (int) (bits ^ (bits >>> 32));
+	}
+	
+}
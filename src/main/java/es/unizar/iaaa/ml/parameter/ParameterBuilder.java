@@ -24,6 +24,10 @@ public class ParameterBuilder {
 		return new IntegerAttr(name);
 	}
 	
+	public static Parameter maxError(double error) {
+		return new MaxError(error);
+	}
+	
 	/**
 	 * Given an array of parameters, returns the one of a given class. If two
 	 * or more parameters share the same class, it only returns the first one,
@@ -36,16 +40,9 @@ public class ParameterBuilder {
 	 */
 	public static Parameter getParam(Parameter[] params, Class<?> type) 
 			throws ParameterNotFoundException {
-		int i=0;
-		boolean found = false;
-		while (i < params.length && !found) {
-			if (type.isInstance(params[i])) {
-				found = true;
-			}
-			i++;
-		}
-		if (found) {
-			return params[i-1];
+		Parameter param = findParam(params, type);
+		if (param != null) {
+			return param;
 		} else {
 			throw new ParameterNotFoundException();
 		}
@@ -59,12 +56,7 @@ public class ParameterBuilder {
 	 * @return true if one param has the specified type, false otherwise.
 	 */
 	public static boolean hasParam(Parameter[] params, Class<?> type) {
-		try {
-			getParam(params, type);
-			return true;
-		} catch(ParameterNotFoundException e) {
-			return false;
-		}
+		return findParam(params, type) != null;
 	}
 	
 	/**
@@ -105,4 +97,21 @@ public class ParameterBuilder {
 		return (Attribute) getParam(params, type);
 	}
 
+	/**
+	 * Given an array of parameters, returns the first one of a given class,
+	 * without throwing exceptions when there is none.
+	 * 
+	 * @param params the array of params.
+	 * @param type the class type.
+	 * @return the first param of the specified class, or null if none.
+	 */
+	private static Parameter findParam(Parameter[] params, Class<?> type) {
+		for (Parameter param : params) {
+			if (type.isInstance(param)) {
+				return param;
+			}
+		}
+		return null;
+	}
+
 }
@@ -1,6 +1,9 @@
 package es.unizar.iaaa.ml.util;
 
 import com.vividsolutions.jts.algorithm.distance.DiscreteHausdorffDistance;
+import com.vividsolutions.jts.algorithm.distance.DistanceToPoint;
+import com.vividsolutions.jts.algorithm.distance.PointPairDistance;
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -21,4 +24,50 @@ public class JTS {
     public static double discreteHausdorffDistance(Geometry a, Geometry b) {
         return DiscreteHausdorffDistance.distance(a, b);
     }
+
+	/**
+	 * Calculates the discrete hausdorff distance between two geometries if it
+	 * is not greater than a limit. The vertices are visited as JTS does, but
+	 * the visit stops as soon as one of them is farther than the limit from
+	 * the other geometry.
+	 * 
+	 * @param a a geometry.
+	 * @param b another geometry.
+	 * @param limit the greatest distance that matters.
+	 * @return the discrete hausdorff distance between them if it is not
+	 *         greater than limit, or a value greater than limit otherwise.
+	 */
+    public static double discreteHausdorffDistance(Geometry a, Geometry b, double limit) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return DiscreteHausdorffDistance.distance(a, b);
+        }
+        PointPairDistance maxDistance = new PointPairDistance();
+        if (orientedDistance(a, b, limit, maxDistance) > limit) {
+            return maxDistance.getDistance();
+        }
+        return orientedDistance(b, a, limit, maxDistance);
+    }
+
+	/**
+	 * Raises a maximum distance with the distance from every vertex of a
+	 * geometry to another geometry, until it is greater than a limit.
+	 * 
+	 * @param a the origin geometry.
+	 * @param b the destination geometry.
+	 * @param limit the greatest distance that matters.
+	 * @param maxDistance the maximum distance found so far.
+	 * @return the maximum distance found.
+	 */
+    private static double orientedDistance(Geometry a, Geometry b, double limit, PointPairDistance maxDistance) {
+        PointPairDistance minDistance = new PointPairDistance();
+        for (Coordinate coordinate : a.getCoordinates()) {
+            minDistance.initialize();
+            DistanceToPoint.computeDistance(b, coordinate, minDistance);
+            maxDistance.setMaximum(minDistance);
+            if (maxDistance.getDistance() > limit) {
+                break;
+            }
+        }
+        return maxDistance.getDistance();
+    }
 }
@@ -0,0 +1,207 @@
+package es.unizar.iaaa.ml.util;
+
+/**
+ * A point index is a static KD-tree over a set of points, that answers which
+ * is the nearest point to a location. The points are kept packed in a single
+ * array, reordered so that every subtree is a contiguous range whose middle
+ * position holds the splitting point. The bounding box of every subtree is
+ * kept too, so subtrees farther than the best distance found are pruned.
+ *
+ * @author Javier Beltran
+ */
+public class PointIndex {
+
+    /* Ranges up to this size are scanned instead of split */
+    private static final int LEAF_SIZE = 8;
+
+    private final double[] xy;
+    private final int size;
+    private final double[] bounds;
+    private final boolean[] splitX;
+
+    /**
+     * Builds the index of a set of points.
+     *
+     * @param packed the x and y of every point, one after another. It is
+     *            copied, so it is not modified.
+     */
+    public PointIndex(double[] packed) {
+        xy = packed.clone();
+        size = packed.length / 2;
+        bounds = new double[4 * size];
+        splitX = new boolean[size];
+        build(0, size);
+    }
+
+    /**
+     * Retrieves the number of indexed points.
+     *
+     * @return the number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the squared distance from a location to its nearest point. The
+     * search stops as soon as a point is found at a squared distance below
+     * stopBelow, returning that distance, as no nearer point is needed then.
+     *
+     * @param x the x of the location.
+     * @param y the y of the location.
+     * @param stopBelow the squared distance under which any point is enough,
+     *            or 0 to always find the nearest one.
+     * @return the squared distance to the nearest point, or to a point closer
+     *         than stopBelow; infinity if there are no points.
+     */
+    public double nearestDistanceSquared(double x, double y, double stopBelow) {
+        return search(0, size, x, y, Double.POSITIVE_INFINITY, stopBelow);
+    }
+
+    /**
+     * Reorders the points of a range into a subtree, and saves its bounding box
+     * and splitting axis at its middle position.
+     *
+     * @param lo the first position of the range, inclusive.
+     * @param hi the last position of the range, exclusive.
+     */
+    private void build(int lo, int hi) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, xy[2 * i]);
+            maxX = Math.max(maxX, xy[2 * i]);
+            minY = Math.min(minY, xy[2 * i + 1]);
+            maxY = Math.max(maxY, xy[2 * i + 1]);
+        }
+        bounds[4 * mid] = minX;
+        bounds[4 * mid + 1] = maxX;
+        bounds[4 * mid + 2] = minY;
+        bounds[4 * mid + 3] = maxY;
+
+        if (hi - lo > LEAF_SIZE) {
+            /* Splits by the median along the widest axis */
+            splitX[mid] = maxX - minX >= maxY - minY;
+            select(lo, hi, mid, splitX[mid] ? 0 : 1);
+            build(lo, mid);
+            build(mid + 1, hi);
+        }
+    }
+
+    /**
+     * Partially sorts a range of points along an axis, so that the point at
+     * position k is preceded by no greater and followed by no smaller points.
+     *
+     * @param lo the first position of the range, inclusive.
+     * @param hi the last position of the range, exclusive.
+     * @param k the position to be selected.
+     * @param axis 0 for the x axis, 1 for the y axis.
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while (hi - lo > 1) {
+            /* Three-way partition, so repeated values do not degrade it */
+            double pivot = xy[2 * ((lo + hi) >>> 1) + axis];
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i < gt) {
+                double value = xy[2 * i + axis];
+                if (value < pivot) {
+                    swap(i++, lt++);
+                } else if (value > pivot) {
+                    swap(i, --gt);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt;
+            } else if (k >= gt) {
+                lo = gt;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two points.
+     */
+    private void swap(int i, int j) {
+        double x = xy[2 * i];
+        double y = xy[2 * i + 1];
+        xy[2 * i] = xy[2 * j];
+        xy[2 * i + 1] = xy[2 * j + 1];
+        xy[2 * j] = x;
+        xy[2 * j + 1] = y;
+    }
+
+    /**
+     * Searches the nearest point to a location in a subtree.
+     *
+     * @param lo the first position of the subtree, inclusive.
+     * @param hi the last position of the subtree, exclusive.
+     * @param x the x of the location.
+     * @param y the y of the location.
+     * @param best the best squared distance found so far.
+     * @param stopBelow the squared distance under which the search stops.
+     * @return the best squared distance found.
+     */
+    private double search(int lo, int hi, double x, double y, double best, double stopBelow) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+
+        /* Prunes the subtree if its bounding box is not nearer than the best */
+        double dx = Math.max(0, Math.max(bounds[4 * mid] - x, x - bounds[4 * mid + 1]));
+        double dy = Math.max(0, Math.max(bounds[4 * mid + 2] - y, y - bounds[4 * mid + 3]));
+        if (dx * dx + dy * dy >= best) {
+            return best;
+        }
+
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi && best >= stopBelow; i++) {
+                best = Math.min(best, distanceSquared(i, x, y));
+            }
+            return best;
+        }
+
+        best = Math.min(best, distanceSquared(mid, x, y));
+        if (best < stopBelow) {
+            return best;
+        }
+
+        /* Visits first the half that contains the location */
+        boolean lower = splitX[mid] ? x < xy[2 * mid] : y < xy[2 * mid + 1];
+        if (lower) {
+            best = search(lo, mid, x, y, best, stopBelow);
+            if (best >= stopBelow) {
+                best = search(mid + 1, hi, x, y, best, stopBelow);
+            }
+        } else {
+            best = search(mid + 1, hi, x, y, best, stopBelow);
+            if (best >= stopBelow) {
+                best = search(lo, mid, x, y, best, stopBelow);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the squared distance from a location to the point at a
+     * position.
+     */
+    private double distanceSquared(int i, double x, double y) {
+        double dx = x - xy[2 * i];
+        double dy = y - xy[2 * i + 1];
+        return dx * dx + dy * dy;
+    }
+
+}
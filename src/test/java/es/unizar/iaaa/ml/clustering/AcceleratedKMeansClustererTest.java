@@ -0,0 +1,77 @@
+package es.unizar.iaaa.ml.clustering;
+
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
+import es.unizar.iaaa.ml.util.DataStoreIterator;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * This class contains the unit tests that check the correctness of the k-means
+ * algorithm accelerated with triangle inequality bounds.
+ * 
+ * @author Javier Beltran
+ */
+public class AcceleratedKMeansClustererTest extends KMeansTest {
+	
+	/**
+	 * The bounds only skip distances that cannot change the assignment, so no
+	 * cluster should be left empty, as with the basic algorithm.
+	 */
+	@Test
+	public void testNoClustersAreEmpty() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 10;
+		noClustersAreEmpty(new ClustererFactory().newAcceleratedKMeansClusterer(
+				k, distance, builder, params));
+	}
+	
+	/**
+	 * The number of resulting clusters should be the specified when executing
+	 * the algorithm.
+	 */
+	@Test
+	public void testNumberOfClusters() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		numberOfClusters(new ClustererFactory().newAcceleratedKMeansClusterer(
+				k, distance, builder, params), k);
+	}
+	
+	/**
+	 * Starting from the same centroids, the accelerated algorithm should
+	 * assign every feature to the same cluster as the basic algorithm.
+	 */
+	@Test
+	public void testSameAssignment() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 15;
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		ClustererFactory factory = new ClustererFactory();
+		KMeansClusterer basic = factory.newKMeansClusterer(k, distance, builder, params);
+		KMeansClusterer accelerated = factory.newAcceleratedKMeansClusterer(k, distance, builder, params);
+		basic.setSeed(7);
+		accelerated.setSeed(7);
+		
+		basic.cluster(list);
+		accelerated.cluster(list);
+		assertArrayEquals(basic.assignment, accelerated.assignment);
+	}
+	
+}
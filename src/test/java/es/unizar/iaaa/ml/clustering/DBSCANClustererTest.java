@@ -1,10 +1,17 @@
 package es.unizar.iaaa.ml.clustering;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeroturnaround.zip.ZipUtil;
@@ -15,6 +22,8 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import es.unizar.iaaa.ml.adapter.Cluster;
@@ -22,6 +31,7 @@ import es.unizar.iaaa.ml.adapter.ClusterBuilder;
 import es.unizar.iaaa.ml.adapter.Clusterable;
 import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
 import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
+import es.unizar.iaaa.ml.distance.EuclideanDistance;
 import es.unizar.iaaa.ml.distance.ExactHausdorffDistance;
 import es.unizar.iaaa.ml.distance.ExactHausdorffTest;
 import es.unizar.iaaa.ml.parameter.Parameter;
@@ -30,6 +40,7 @@ import es.unizar.iaaa.ml.util.DataStoreReader;
 import es.unizar.iaaa.ml.util.RemoveVisitor;
 
 import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -157,6 +168,271 @@ public class DBSCANClustererTest {
         testClusters(clusters, 31);
     }
 
+    /**
+     * Tests that answering region queries with an index gives the same clusters
+     * as scanning every feature, using R15.shp
+     */
+    @Test
+    public void testIndexedRegionQueries() throws ParameterNotFoundException {
+        logger.info("R15 indexed");
+        eps = 0.5;
+        minPts = 2;
+
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasets[Datasets.R15.ordinal()]) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        List<Cluster> linear = new DBSCANClusterer(eps, minPts, distance, builder,
+                DBSCANClusterer.Index.LINEAR_SCAN, params).cluster(list);
+        List<Cluster> indexed = new DBSCANClusterer(eps, minPts, distance, builder,
+                DBSCANClusterer.Index.STR_TREE, params).cluster(list);
+        testSameClusters(linear, indexed);
+    }
+
+    /**
+     * Tests that processing the features in parallel spatial tiles gives the
+     * same clusters as the sequential algorithm, using D31.shp
+     */
+    @Test
+    public void testPartitionedClusters() throws ParameterNotFoundException {
+        logger.info("D31 partitioned");
+        eps = 1;
+        minPts = 5;
+
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasets[Datasets.D31.ordinal()]) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        List<Cluster> sequential = new DBSCANClusterer(eps, minPts, distance, builder, params).cluster(list);
+        PartitionedDBSCANClusterer partitioned = new PartitionedDBSCANClusterer(eps, minPts, distance, builder,
+                params);
+        partitioned.setParallelism(4);
+        testSameClusters(sequential, partitioned.cluster(list));
+    }
+
+    /**
+     * Tests that answering region queries with a grid of points gives the same
+     * clusters as scanning every feature with the euclidean distance, using
+     * D31.shp
+     */
+    @Test
+    public void testGridClusters() throws ParameterNotFoundException {
+        logger.info("D31 grid");
+        eps = 1;
+        minPts = 5;
+
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasets[Datasets.D31.ordinal()]) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        EuclideanDistance euclidean = new EuclideanDistance();
+        DBSCANClusterer grid = new ClustererFactory().newDBSCANClusterer(eps, minPts, euclidean, builder, params);
+        assertTrue(grid instanceof GridDBSCANClusterer);
+        testSameClusters(new DBSCANClusterer(eps, minPts, euclidean, builder, params).cluster(list),
+                grid.cluster(list));
+    }
+
+    /**
+     * Tests that the clusters extracted from a single OPTICS ordering for
+     * several eps have the same core features as those of DBSCAN, using
+     * R15.shp
+     */
+    @Test
+    public void testOPTICSExtraction() throws ParameterNotFoundException {
+        logger.info("R15 OPTICS");
+        minPts = 2;
+
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasets[Datasets.R15.ordinal()]) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        OPTICSClusterer optics = new OPTICSClusterer(0.5, minPts, distance, builder,
+                DBSCANClusterer.Index.STR_TREE, params);
+        testClusters(optics.cluster(list), 15);
+        for (double eps : new double[]{0.5, 0.3}) {
+            List<Cluster> expected = new DBSCANClusterer(eps, minPts, distance, builder, params).cluster(list);
+            testSameCores(expected, optics.extract(eps), list, eps);
+        }
+    }
+
+    /**
+     * Tests that clustering the features at once gives the same clusters as
+     * DBSCANClusterer, and that inserting them in batches gives clusters with
+     * the same core features, using R15.shp
+     */
+    @Test
+    public void testIncrementalClusters() throws ParameterNotFoundException {
+        logger.info("R15 incremental");
+        eps = 0.5;
+        minPts = 2;
+
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasets[Datasets.R15.ordinal()]) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        List<Cluster> expected = new DBSCANClusterer(eps, minPts, distance, builder, params).cluster(list);
+        IncrementalDBSCANClusterer incremental = new IncrementalDBSCANClusterer(eps, minPts, distance, builder,
+                params);
+        testSameClusters(expected, incremental.cluster(list));
+
+        incremental.reset();
+        for (int i = 0; i < list.size(); i += 100) {
+            for (IncrementalDBSCANClusterer.Change change : incremental.insert(
+                    list.subList(i, Math.min(i + 100, list.size())))) {
+                for (Clusterable added : change.getAdded()) {
+                    assertTrue(change.getCluster().contains(added));
+                }
+            }
+        }
+        List<Cluster> clusters = incremental.getClusters();
+        testSameCores(expected, clusters, list, eps);
+        testClusters(clusters, 15);
+    }
+
+    /**
+     * Tests that the changes of every insertion tell the clusters that are
+     * created, grow or merge, with two groups of points that are bridged by
+     * a later batch.
+     */
+    @Test
+    public void testIncrementalChanges() throws ParameterNotFoundException, SchemaException {
+        logger.info("Incremental changes");
+        eps = 1;
+        minPts = 1;
+
+        SimpleFeatureType type = DataUtilities.createType("PointFeature", "geom:Point");
+        SimpleFeatureBuilder points = new SimpleFeatureBuilder(type);
+        IncrementalDBSCANClusterer incremental = new IncrementalDBSCANClusterer(eps, minPts, distance,
+                new SimpleFeatureCollectionBuilder(type), params);
+
+        List<IncrementalDBSCANClusterer.Change> changes = incremental.insert(Arrays.asList(
+                point(points, 0, 0), point(points, 0.5, 0), point(points, 3, 0), point(points, 3.5, 0)));
+        assertEquals(2, changes.size());
+        for (IncrementalDBSCANClusterer.Change change : changes) {
+            assertEquals(IncrementalDBSCANClusterer.Change.Type.CREATED, change.getType());
+            assertEquals(2, change.getAdded().size());
+        }
+        int first = changes.get(0).getId();
+        int second = changes.get(1).getId();
+
+        /* The new points are less than eps apart from each other and both groups */
+        changes = incremental.insert(Arrays.asList(point(points, 1, 0), point(points, 1.75, 0),
+                point(points, 2.5, 0)));
+        assertEquals(1, changes.size());
+        IncrementalDBSCANClusterer.Change merge = changes.get(0);
+        assertEquals(IncrementalDBSCANClusterer.Change.Type.MERGED, merge.getType());
+        assertEquals(Arrays.asList(first, second), merge.getMerged());
+        assertEquals(first, merge.getId());
+        assertEquals(3, merge.getAdded().size());
+        assertEquals(1, incremental.getClusters().size());
+
+        changes = incremental.insert(Collections.singletonList(point(points, 4.25, 0)));
+        assertEquals(1, changes.size());
+        assertEquals(IncrementalDBSCANClusterer.Change.Type.GROWN, changes.get(0).getType());
+        assertEquals(Collections.singletonList(first), changes.get(0).getMerged());
+    }
+
+    /**
+     * Creates a point feature.
+     *
+     * @param points the builder of point features
+     * @param x      the x coordinate of the point
+     * @param y      the y coordinate of the point
+     * @return the point feature
+     */
+    private Clusterable point(SimpleFeatureBuilder points, double x, double y) {
+        points.add(new GeometryFactory().createPoint(new Coordinate(x, y)));
+        return new SimpleFeatureClusterable(points.buildFeature(null));
+    }
+
+    /**
+     * Checks that two lists of clusters contain the same features, in the same
+     * clusters.
+     *
+     * @param expected the expected list of clusters
+     * @param actual   the list of clusters being checked
+     */
+    private void testSameClusters(List<Cluster> expected, List<Cluster> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            int size = 0;
+            SimpleFeatureIterator it = expected.get(i).getAttribute(Clusterable.Property.CLUSTERS_ITERATOR, SimpleFeatureIterator.class);
+            while (it.hasNext()) {
+                assertTrue(actual.get(i).contains(new SimpleFeatureClusterable(it.next())));
+                size++;
+            }
+
+			/* Counts the features of the actual cluster */
+            it = actual.get(i).getAttribute(Clusterable.Property.CLUSTERS_ITERATOR, SimpleFeatureIterator.class);
+            while (it.hasNext()) {
+                it.next();
+                size--;
+            }
+            assertEquals(0, size);
+        }
+    }
+
+    /**
+     * Checks that the core features of every expected cluster are all in one
+     * actual cluster, and that no two expected clusters share it. Border
+     * features are left out, as they may join any of the clusters they touch.
+     *
+     * @param expected the expected list of clusters
+     * @param actual   the list of clusters being checked
+     * @param features the clustered features
+     * @param eps      the max distance between neighbors
+     */
+    private void testSameCores(List<Cluster> expected, List<Cluster> actual, List<Clusterable> features,
+            double eps) throws ParameterNotFoundException {
+        assertEquals(expected.size(), actual.size());
+        boolean[] matched = new boolean[actual.size()];
+        for (Cluster cluster : expected) {
+            int found = -1;
+            for (Clusterable feature : features) {
+                if (!cluster.contains(feature) || !isCore(feature, features, eps)) {
+                    continue;
+                }
+                if (found < 0) {
+                    /* The first core feature tells the actual cluster */
+                    for (int i = 0; i < actual.size() && found < 0; i++) {
+                        if (actual.get(i).contains(feature)) {
+                            found = i;
+                        }
+                    }
+                    assertTrue(found >= 0 && !matched[found]);
+                    matched[found] = true;
+                } else {
+                    assertTrue(actual.get(found).contains(feature));
+                }
+            }
+            assertTrue(found >= 0);
+        }
+    }
+
+    /**
+     * Checks if a feature has at least minPts neighbors within eps.
+     *
+     * @param feature  the feature
+     * @param features the features that can be its neighbors
+     * @param eps      the max distance between neighbors
+     * @return true, if it is a core feature
+     */
+    private boolean isCore(Clusterable feature, List<Clusterable> features, double eps)
+            throws ParameterNotFoundException {
+        int count = 0;
+        for (Clusterable other : features) {
+            if (other != feature && distance.distance(feature, other, params) <= eps) {
+                count++;
+            }
+        }
+        return count >= minPts;
+    }
+
     /**
      * Checks no features with the same output are placed in different clusters.
      *
@@ -1,10 +1,20 @@
 package es.unizar.iaaa.ml.clustering;
 
 import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
 import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
 import es.unizar.iaaa.ml.util.DataStoreIterator;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * This class contains the unit tests that check the correctness of the k-means
  * algorithm.
@@ -40,4 +50,122 @@ public class KMeansClustererTest extends KMeansTest {
 		numberOfClusters(new KMeansClusterer(k, distance, builder, params), k);
 	}
 	
+	/**
+	 * Running the assignment step in parallel should not change the number of
+	 * resulting clusters.
+	 */
+	@Test
+	public void testParallelNumberOfClusters() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		KMeansClusterer clusterer = new KMeansClusterer(k, distance, builder, params);
+		clusterer.setParallelism(4);
+		numberOfClusters(clusterer, k);
+	}
+	
+	/**
+	 * With the same seed, the assignment step should assign every feature to
+	 * the same cluster, whatever the number of threads.
+	 */
+	@Test
+	public void testParallelSameAssignment() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 15;
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		KMeansClusterer sequential = new KMeansClusterer(k, distance, builder, params);
+		KMeansClusterer parallel = new KMeansClusterer(k, distance, builder, params);
+		sequential.setSeed(7);
+		parallel.setSeed(7);
+		sequential.setParallelism(1);
+		parallel.setParallelism(4);
+		
+		sequential.cluster(list);
+		parallel.cluster(list);
+		assertArrayEquals(sequential.assignment, parallel.assignment);
+	}
+	
+	/**
+	 * The algorithm should stop after the maximum number of iterations, and
+	 * notify the listener at the end of each of them.
+	 */
+	@Test
+	public void testMaxIterations() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		final List<Integer> notified = new ArrayList<>();
+		KMeansClusterer clusterer = new KMeansClusterer(k, distance, builder, params);
+		clusterer.setMaxIterations(2);
+		clusterer.setIterationListener(new IterationListener() {
+			@Override
+			public boolean iterationFinished(int iteration, double shift) {
+				notified.add(iteration);
+				return true;
+			}
+		});
+		numberOfClusters(clusterer, k);
+		
+		assertTrue(clusterer.getIterations() <= 2);
+		assertEquals(clusterer.getIterations(), notified.size());
+	}
+	
+	/**
+	 * The listener should be able to stop the algorithm after any iteration.
+	 */
+	@Test
+	public void testListenerStops() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		KMeansClusterer clusterer = new KMeansClusterer(k, distance, builder, params);
+		clusterer.setIterationListener(new IterationListener() {
+			@Override
+			public boolean iterationFinished(int iteration, double shift) {
+				return false;
+			}
+		});
+		assertEquals(k, clusterer.cluster(list).size());
+		assertEquals(1, clusterer.getIterations());
+	}
+	
+	/**
+	 * Clusterers created by factories with the same seed should make the same
+	 * random choices, and so give the same clusters, execution after execution.
+	 */
+	@Test
+	public void testSeededFactory() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		KMeansClusterer first = new ClustererFactory(42).newKMeansPlusPlusClusterer(
+				k, distance, builder, params);
+		KMeansClusterer second = new ClustererFactory(42).newKMeansPlusPlusClusterer(
+				k, distance, builder, params);
+		
+		first.cluster(list);
+		int[] expected = first.assignment.clone();
+		second.cluster(list);
+		assertArrayEquals(expected, second.assignment);
+		first.cluster(list);
+		assertArrayEquals(expected, first.assignment);
+	}
+	
 }
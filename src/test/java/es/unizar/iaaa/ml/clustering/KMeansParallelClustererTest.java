@@ -0,0 +1,111 @@
+package es.unizar.iaaa.ml.clustering;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
+import es.unizar.iaaa.ml.util.DataStoreIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the unit tests that check the correctness of the
+ * k-means algorithm initialized with k-means||.
+ * 
+ * @author Javier Beltran
+ */
+public class KMeansParallelClustererTest extends KMeansTest {
+	
+	/**
+	 * K-Means|| initialization based on the positions of existing elements in
+	 * the dataset should guarantee that no cluster is left empty by the 
+	 * algorithm, as every cluster will always have at least one nearer element.
+	 */
+	@Test
+	public void testNoClustersAreEmpty() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+
+		int k = 10;
+		noClustersAreEmpty(new KMeansParallelClusterer(k, distance, builder, params));
+	}
+	
+	/**
+	 * The number of resulting clusters should be the specified when executing
+	 * the algorithm.
+	 */
+	@Test
+	public void testNumberOfClusters() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+
+		int k = 5;
+		numberOfClusters(new KMeansParallelClusterer(k, distance, builder, params), k);
+	}
+	
+	/**
+	 * Every candidate is sampled at most once, so the centroids selected among
+	 * them should be different features.
+	 */
+	@Test
+	public void testDistinctInitialCentroids() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		int k = 50;
+		KMeansParallelClusterer clusterer = new KMeansParallelClusterer(k, distance, builder, params);
+		clusterer.initializeCentroids(list);
+		
+		Set<Clusterable> distinct = Collections.newSetFromMap(new IdentityHashMap<Clusterable, Boolean>());
+		distinct.addAll(clusterer.centroids);
+		assertEquals(k, distinct.size());
+	}
+	
+	/**
+	 * A feature without geometry is at an infinite distance from every
+	 * candidate, so it should be sampled, and the rest of the candidates
+	 * should still be sampled and reclustered by their weights.
+	 */
+	@Test
+	public void testFeatureWithoutGeometry() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		SimpleFeatureType type = iterator.next().getType();
+		builder = new SimpleFeatureCollectionBuilder(type);
+		iterator.close();
+
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		Clusterable empty = new SimpleFeatureClusterable(new SimpleFeatureBuilder(type).buildFeature(null));
+		list.add(empty);
+		int k = 50;
+		KMeansParallelClusterer clusterer = new KMeansParallelClusterer(k, distance, builder, params);
+		clusterer.setRounds(1);
+		clusterer.initializeCentroids(list);
+		
+		Set<Clusterable> distinct = Collections.newSetFromMap(new IdentityHashMap<Clusterable, Boolean>());
+		distinct.addAll(clusterer.centroids);
+		assertEquals(k, distinct.size());
+		assertTrue(distinct.contains(empty));
+	}
+	
+}
@@ -1,10 +1,24 @@
 package es.unizar.iaaa.ml.clustering;
 
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
 import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
 import es.unizar.iaaa.ml.util.DataStoreIterator;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * This class contains the unit tests that check the correctness of the
  * k-means++ algorithm.
@@ -42,4 +56,55 @@ public class KMeansPlusPlusClustererTest extends KMeansTest {
 		numberOfClusters(new KMeansPlusPlusClusterer(k, distance, builder, params), k);
 	}
 	
+	/**
+	 * A feature already selected as centroid is at distance zero from the
+	 * centroids, so the seeding should never select it again.
+	 */
+	@Test
+	public void testDistinctInitialCentroids() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		int k = 50;
+		KMeansPlusPlusClusterer clusterer = new KMeansPlusPlusClusterer(k, distance, builder, params);
+		clusterer.initializeCentroids(list);
+		
+		Set<Clusterable> distinct = Collections.newSetFromMap(new IdentityHashMap<Clusterable, Boolean>());
+		distinct.addAll(clusterer.centroids);
+		assertEquals(k, distinct.size());
+	}
+	
+	/**
+	 * A feature without geometry is at an infinite distance from every
+	 * centroid, even when it is one, so it should neither make the weights
+	 * infinite nor be selected again.
+	 */
+	@Test
+	public void testFeatureWithoutGeometry() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		SimpleFeatureType type = iterator.next().getType();
+		builder = new SimpleFeatureCollectionBuilder(type);
+		iterator.close();
+
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		Clusterable empty = new SimpleFeatureClusterable(new SimpleFeatureBuilder(type).buildFeature(null));
+		list.add(empty);
+		int k = 50;
+		KMeansPlusPlusClusterer clusterer = new KMeansPlusPlusClusterer(k, distance, builder, params);
+		clusterer.initializeCentroids(list);
+		
+		Set<Clusterable> distinct = Collections.newSetFromMap(new IdentityHashMap<Clusterable, Boolean>());
+		distinct.addAll(clusterer.centroids);
+		assertEquals(k, distinct.size());
+		assertTrue(distinct.contains(empty));
+	}
+	
 }
@@ -83,7 +83,7 @@ public abstract class KMeansTest {
 	/**
 	 * Checks that, after executing the algorithm, the number of clusters is k.
 	 */
-	 void numberOfClusters(KMeansClusterer clusterer, int k)
+	 void numberOfClusters(FeatureClusterer clusterer, int k)
 			throws ParameterNotFoundException, SchemaException {
 		List<Clusterable> list = new ArrayList<>();
         for(SimpleFeature feature: dataset) {
@@ -0,0 +1,107 @@
+package es.unizar.iaaa.ml.clustering;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Cluster;
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
+import es.unizar.iaaa.ml.util.DataStoreIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the unit tests that check the correctness of the
+ * mini-batch k-means algorithm.
+ * 
+ * @author Javier Beltran
+ */
+public class MiniBatchKMeansClustererTest extends KMeansTest {
+	
+	/**
+	 * Every feature of the list should belong to exactly one cluster, and no
+	 * more than k clusters should be returned.
+	 */
+	@Test
+	public void testEveryFeatureIsAssigned() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 15;
+		
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		List<Cluster> clusters = new ClustererFactory().newMiniBatchKMeansClusterer(
+				k, 100, 50, distance, builder, params).cluster(list);
+		
+		assertTrue(clusters.size() <= k);
+		assertEquals(list.size(), countFeatures(clusters));
+	}
+	
+	/**
+	 * Reading the batches from the data store should also assign every feature
+	 * to exactly one cluster.
+	 */
+	@Test
+	public void testStreamedFeaturesAreAssigned() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 15;
+		
+		int size = 0;
+		for (iterator = dataset.iterator(); iterator.hasNext(); iterator.next()) {
+			size++;
+		}
+		iterator.close();
+		List<Cluster> clusters = new ClustererFactory().newMiniBatchKMeansClusterer(
+				k, 100, 50, distance, builder, params).cluster(dataset);
+		
+		assertTrue(clusters.size() <= k);
+		assertEquals(size, countFeatures(clusters));
+	}
+	
+	/**
+	 * A list with less features than clusters cannot seed every centroid.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testLessFeaturesThanClusters() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		int k = 15;
+
+		List<Clusterable> list = new ArrayList<>();
+		while (list.size() < k - 1) {
+			list.add(new SimpleFeatureClusterable(iterator.next()));
+		}
+		iterator.close();
+		new ClustererFactory().newMiniBatchKMeansClusterer(
+				k, 100, 50, distance, builder, params).cluster(list);
+	}
+
+	/**
+	 * Counts the features contained in a list of clusters.
+	 */
+	private int countFeatures(List<Cluster> clusters) {
+		int count = 0;
+		for (Cluster cluster : clusters) {
+			SimpleFeatureIterator it = cluster.getAttribute(
+					Clusterable.Property.CLUSTERS_ITERATOR, SimpleFeatureIterator.class);
+			while (it.hasNext()) {
+				it.next();
+				count++;
+			}
+			it.close();
+		}
+		return count;
+	}
+	
+}
@@ -0,0 +1,135 @@
+package es.unizar.iaaa.ml.clustering;
+
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureCollectionBuilder;
+import es.unizar.iaaa.ml.util.DataStoreIterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the unit tests that check the correctness of running
+ * the k-means algorithm several times.
+ * 
+ * @author Javier Beltran
+ */
+public class MultiStartKMeansClustererTest extends KMeansTest {
+	
+	/**
+	 * The number of resulting clusters should be the specified when executing
+	 * the algorithm.
+	 */
+	@Test
+	public void testNumberOfClusters() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		int k = 5;
+		numberOfClusters(new ClustererFactory().newMultiStartKMeansPlusPlusClusterer(
+				4, k, distance, builder, params), k);
+	}
+	
+	/**
+	 * The clusters returned should be those of the run with the lowest cost,
+	 * and every run should be reported.
+	 */
+	@Test
+	public void testBestRun() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		int starts = 4;
+		MultiStartKMeansClusterer clusterer = new ClustererFactory().newMultiStartKMeansClusterer(
+				starts, 10, distance, builder, params);
+		clusterer.setParallelism(2);
+		assertEquals(10, clusterer.cluster(list).size());
+		
+		assertEquals(starts, clusterer.getRuns().size());
+		double best = clusterer.getRuns().get(clusterer.getBestRun()).getCost();
+		for (MultiStartKMeansClusterer.Run run : clusterer.getRuns()) {
+			assertTrue(best <= run.getCost());
+			assertTrue(run.getIterations() >= 1);
+		}
+	}
+	
+	/**
+	 * Seeding a multi-start clusterer should seed every run, so that two
+	 * clusterers with the same seed, or two executions of the same clusterer,
+	 * give runs of the same cost.
+	 */
+	@Test
+	public void testSeed() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		MultiStartKMeansClusterer first = new ClustererFactory().newMultiStartKMeansClusterer(
+				3, 10, distance, builder, params);
+		MultiStartKMeansClusterer second = new ClustererFactory().newMultiStartKMeansClusterer(
+				3, 10, distance, builder, params);
+		first.setSeed(7);
+		second.setSeed(7);
+		
+		first.cluster(list);
+		double[] costs = costs(first);
+		second.cluster(list);
+		assertArrayEquals(costs, costs(second), 0);
+		first.cluster(list);
+		assertArrayEquals(costs, costs(first), 0);
+	}
+	
+	/**
+	 * Clustering binds the distance measure only for the execution, so a
+	 * multi-start clusterer made of clusterers that were already run should
+	 * get the distance measure that was configured.
+	 */
+	@Test
+	public void testConfiguredDistance() throws Exception {
+		DataStoreIterator iterator = dataset.iterator();
+		builder = new SimpleFeatureCollectionBuilder(iterator.next().getType());
+		iterator.close();
+		List<Clusterable> list = new ArrayList<>();
+		for (SimpleFeature feature : dataset) {
+			list.add(new SimpleFeatureClusterable(feature));
+		}
+		List<KMeansClusterer> clusterers = new ArrayList<>();
+		for (int i=0; i<2; i++) {
+			KMeansClusterer clusterer = new KMeansClusterer(5, distance, builder, params);
+			clusterer.cluster(list);
+			assertSame(distance, clusterer.distance);
+			clusterers.add(clusterer);
+		}
+		
+		MultiStartKMeansClusterer multiStart = new MultiStartKMeansClusterer(clusterers);
+		assertSame(distance, multiStart.distance);
+		assertEquals(5, multiStart.cluster(list).size());
+	}
+	
+	/**
+	 * Retrieves the cost of every run of the last execution.
+	 */
+	private double[] costs(MultiStartKMeansClusterer clusterer) {
+		double[] costs = new double[clusterer.getRuns().size()];
+		for (int i=0; i<costs.length; i++) {
+			costs[i] = clusterer.getRuns().get(i).getCost();
+		}
+		return costs;
+	}
+	
+}
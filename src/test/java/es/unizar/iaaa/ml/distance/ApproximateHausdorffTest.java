@@ -0,0 +1,101 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.geotools.feature.SchemaException;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.zeroturnaround.zip.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.adapter.SimpleFeatureClusterable;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+import es.unizar.iaaa.ml.util.DataStoreReader;
+import es.unizar.iaaa.ml.util.RemoveVisitor;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.maxError;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the approximate Hausdorff Distance.
+ *
+ * @author Javier Beltran
+ */
+public class ApproximateHausdorffTest extends DistanceTest {
+
+    private static final String PATH_CCAA_NAME = "Comunidades_Autonomas_ETRS89_30N";
+    private static final String PATH_CCAA_ZIP = "/data/" + PATH_CCAA_NAME + ".zip";
+    private static final String PATH_CCAA_SHP = PATH_CCAA_NAME + ".shp";
+    private static Path workingDir;
+    private static DataStoreReader datasetCCAA;
+    private static final double MAX_ERROR = 1000;
+    private ApproximateHausdorffDistance approximateDistance;
+    private ExactHausdorffDistance exactDistance;
+
+    @BeforeClass
+    public static void unzip() throws Exception {
+        File zip = new File(ApproximateHausdorffTest.class.getResource(PATH_CCAA_ZIP).getFile());
+        workingDir = Files.createTempDirectory(ApproximateHausdorffTest.class.getCanonicalName());
+        ZipUtil.unpack(zip, workingDir.toFile());
+        datasetCCAA = DataStoreReader.shapefile(FileSystems.getDefault().getPath(workingDir.toString(), PATH_CCAA_SHP).toFile());
+    }
+
+    @AfterClass
+    public static void removeUnzipped() throws IOException {
+        Files.walkFileTree(workingDir, new RemoveVisitor());
+    }
+
+    @Before
+    public void setupDistance() throws SchemaException {
+        approximateDistance = new ApproximateHausdorffDistance();
+        exactDistance = new ExactHausdorffDistance();
+    }
+
+    /**
+     * Unit test that checks that without a maximum error the exact distance is computed.
+     */
+    @Test
+    public void testFeaturesWithoutError() throws ParameterNotFoundException {
+        double distance = approximateDistance.distance(
+                getFeaturePolygon("POLYGON((0 0, 1 0, 0 1, 0 0))"),
+                getFeaturePolygon("POLYGON((-1 0, -2 0, -1 1, -1 0))"),
+                geom());
+
+		 /* Distance between feature1 and feature2 should be 2. */
+        assertEquals(2, distance, 0);
+    }
+
+    /**
+     * Unit test that calculates the ApproximateHausdorffDistance between every pair of features
+     * found in a shapefile, and checks that it does not differ from the solution found by
+     * ExactHausdorffDistance more than the maximum error.
+     */
+    @Test
+    public void testAllFeaturesByComparisonWithExact() throws Exception {
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasetCCAA) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+    	/* Tests every feature against every feature */
+        for (Clusterable f1 : list) {
+            for (Clusterable f2 : list) {
+                double testDistance = approximateDistance.distance(f1, f2, geom(), maxError(MAX_ERROR));
+                double realDistance = exactDistance.distance(f1, f2, geom());
+
+                assertEquals(realDistance, testDistance, MAX_ERROR);
+            }
+        }
+    }
+
+}
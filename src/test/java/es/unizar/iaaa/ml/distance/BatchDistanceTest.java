@@ -0,0 +1,84 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.integer;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class contains the unit tests that check that distances computed in a
+ * batch are the same as those computed one by one.
+ * 
+ * @author Javier Beltran
+ */
+public class BatchDistanceTest extends DistanceTest {
+	
+	/**
+	 * Checks the batches of the euclidean distance, including features of a
+	 * distinct type.
+	 */
+	@Test
+	public void testEuclidean() throws ParameterNotFoundException {
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePoint("POINT (0 0)"));
+		features.add(getFeaturePoint("POINT (4 3)"));
+		features.add(getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))"));
+		features.add(getFeaturePoint("POINT (4 3)"));
+		checkBatches(new EuclideanDistance(), features, geom());
+	}
+	
+	/**
+	 * Checks the batches of the exact hausdorff distance.
+	 */
+	@Test
+	public void testExactHausdorff() throws ParameterNotFoundException {
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))"));
+		features.add(getFeaturePolygon("POLYGON ((-1 0, -2 0, -1 1, -1 0))"));
+		features.add(getFeaturePolygon("POLYGON ((3 3, 5 3, 5 6, 3 3))"));
+		checkBatches(new ExactHausdorffDistance(), features, geom());
+	}
+	
+	/**
+	 * Checks the batches of a combined distance, whose measures are computed
+	 * in batches too.
+	 */
+	@Test
+	public void testCombined() throws ParameterNotFoundException {
+		CombinedDistance combined = new CombinedDistance(
+				Arrays.<DistanceMeasure>asList(new EuclideanDistance(), new AbsoluteDifferenceDistance()),
+				Arrays.asList(0.4, 0.6));
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePointAndInteger("POINT (0 0)", 12));
+		features.add(getFeaturePointAndInteger("POINT (4 3)", 4));
+		features.add(getFeaturePointAndInteger("POINT (1 7)", 9));
+		checkBatches(combined, features, geom(), integer("number"));
+	}
+	
+	/**
+	 * Checks that the batches give the same distances as computing them one
+	 * by one, through the builder that also accepts measures without batches.
+	 */
+	private void checkBatches(DistanceMeasure distance, List<Clusterable> features, Parameter... params)
+			throws ParameterNotFoundException {
+		int n = features.size();
+		double[] row = new double[n];
+		for (int i=0; i<n; i++) {
+			DistanceMeasureBuilder.distances(distance, features.get(i), features, row, params);
+			for (int j=0; j<n; j++) {
+				double expected = distance.distance(features.get(i), features.get(j), params);
+				assertEquals(expected, row[j], 0);
+			}
+		}
+	}
+	
+}
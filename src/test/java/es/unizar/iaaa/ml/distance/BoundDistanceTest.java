@@ -0,0 +1,92 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.integer;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.maxError;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * This class contains the unit tests that check that distances bound to some
+ * parameters are the same as those computed with the parameters.
+ * 
+ * @author Javier Beltran
+ */
+public class BoundDistanceTest extends DistanceTest {
+	
+	/**
+	 * Checks the bound hausdorff distances, which are infinite when bound to
+	 * an attribute that is not a geometry.
+	 */
+	@Test
+	public void testHausdorff() throws ParameterNotFoundException {
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))"));
+		features.add(getFeaturePolygon("POLYGON ((-1 0, -2 0, -1 1, -1 0))"));
+		features.add(getFeaturePolygon("POLYGON ((3 3, 5 3, 5 6, 3 3))"));
+		checkBound(new ExactHausdorffDistance(), features, geom());
+		checkBound(new ExactHausdorffDistance(), features, integer("number"));
+		checkBound(new IndexedHausdorffDistance(), features, geom());
+		checkBound(new ApproximateHausdorffDistance(0.5), features, geom());
+		checkBound(new ApproximateHausdorffDistance(0.5), features, geom(), maxError(0));
+		checkBound(new DiscreteHausdorffDistance(), features, geom());
+	}
+	
+	/**
+	 * Checks a bound combined distance, and a measure that cannot be bound in
+	 * advance.
+	 */
+	@Test
+	public void testCombined() throws ParameterNotFoundException {
+		CombinedDistance combined = new CombinedDistance(
+				Arrays.<DistanceMeasure>asList(new EuclideanDistance(), new AbsoluteDifferenceDistance()),
+				Arrays.asList(0.4, 0.6));
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePointAndInteger("POINT (0 0)", 12));
+		features.add(getFeaturePointAndInteger("POINT (4 3)", 4));
+		features.add(getFeaturePointAndInteger("POINT (1 7)", 9));
+		checkBound(combined, features, geom(), integer("number"));
+		checkBound(new EuclideanDistance(), features, geom());
+	}
+	
+	/**
+	 * A missing parameter should be reported when binding, and binding again
+	 * should return the same bound distance.
+	 */
+	@Test(expected = ParameterNotFoundException.class)
+	public void testMissingParameter() throws ParameterNotFoundException {
+		BoundDistance bound = DistanceMeasureBuilder.bind(new AbsoluteDifferenceDistance(), integer("number"));
+		assertSame(bound, DistanceMeasureBuilder.bind(bound));
+		DistanceMeasureBuilder.bind(new AbsoluteDifferenceDistance(), geom());
+	}
+	
+	/**
+	 * Checks that the bound distance, one by one and in a batch, gives the
+	 * same distances as the measure with the parameters.
+	 */
+	private void checkBound(DistanceMeasure distance, List<Clusterable> features, Parameter... params)
+			throws ParameterNotFoundException {
+		BoundDistance bound = DistanceMeasureBuilder.bind(distance, params);
+		int n = features.size();
+		double[] row = new double[n];
+		for (int i=0; i<n; i++) {
+			bound.distances(features.get(i), features, row);
+			for (int j=0; j<n; j++) {
+				double expected = distance.distance(features.get(i), features.get(j), params);
+				assertEquals(expected, bound.distance(features.get(i), features.get(j)), 0);
+				assertEquals(expected, row[j], 0);
+			}
+		}
+	}
+	
+}
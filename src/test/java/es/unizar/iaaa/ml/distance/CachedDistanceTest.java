@@ -0,0 +1,108 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the tests for the cached distance.
+ *
+ * @author Javier Beltran
+ */
+public class CachedDistanceTest extends DistanceTest {
+
+    private EuclideanDistance euclidean;
+    private List<Clusterable> features;
+
+    @Before
+    public void setupDistance() {
+        euclidean = new EuclideanDistance();
+        features = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            features.add(getFeaturePoint("POINT(" + i + " " + (i * i) + ")"));
+        }
+    }
+
+    /**
+     * Unit test that checks that every pair of features is computed once when the whole matrix of
+     * distances is cached.
+     */
+    @Test
+    public void testMatrixCache() throws ParameterNotFoundException {
+        CachedDistance cached = new CachedDistance(euclidean, features);
+        checkAllPairs(cached);
+
+        /* Every pair, in any order, is computed only the first time */
+        assertEquals(features.size() * (features.size() + 1) / 2, cached.getMisses());
+        assertEquals(2 * features.size() * features.size() - cached.getMisses(), cached.getHits());
+    }
+
+    /**
+     * Unit test that checks that the distances are still right when the memory budget only allows
+     * some of them to be cached.
+     */
+    @Test
+    public void testBoundedCache() throws ParameterNotFoundException {
+        CachedDistance cached = new CachedDistance(euclidean, features, 0);
+        checkAllPairs(cached);
+
+        /* Nothing fits in the budget, so every distance is computed */
+        assertEquals(0, cached.getHits());
+        assertEquals(2 * features.size() * features.size(), cached.getMisses());
+    }
+
+    /**
+     * Unit test that checks that features out of the list are not cached.
+     */
+    @Test
+    public void testUnknownFeatures() throws ParameterNotFoundException {
+        CachedDistance cached = new CachedDistance(euclidean, features);
+        Clusterable other = getFeaturePoint("POINT(3 4)");
+
+        assertEquals(5, cached.distance(getFeaturePoint("POINT(0 0)"), other, geom()), 0);
+        assertEquals(0, cached.getHits() + cached.getMisses());
+    }
+
+    /**
+     * Unit test that checks that distances computed up to a limit are only
+     * cached when they are within the limit.
+     */
+    @Test
+    public void testLimitedDistances() throws ParameterNotFoundException {
+        CachedDistance cached = new CachedDistance(new ExactHausdorffDistance(), features);
+        Clusterable a = features.get(0);
+        Clusterable b = features.get(3);
+
+        /* The distance is sqrt(9 + 81), so it exceeds a limit of 1 */
+        double far = cached.distanceUpTo(a, b, 1, geom());
+        assertTrue(far > 1);
+        assertEquals(Math.sqrt(90), cached.distanceUpTo(a, b, 10, geom()), 0);
+        assertEquals(Math.sqrt(90), cached.distanceUpTo(a, b, 1, geom()), 0);
+        assertEquals(1, cached.getHits());
+        assertEquals(2, cached.getMisses());
+    }
+
+    /**
+     * Computes the distance between every pair of features twice, checking
+     * that it is the same as the one of the decorated distance.
+     */
+    private void checkAllPairs(CachedDistance cached) throws ParameterNotFoundException {
+        for (int round = 0; round < 2; round++) {
+            for (Clusterable a : features) {
+                for (Clusterable b : features) {
+                    assertEquals(euclidean.distance(a, b, geom()), cached.distance(a, b, geom()), 0);
+                }
+            }
+        }
+    }
+
+}
@@ -8,11 +8,13 @@ import java.util.Arrays;
 import java.util.List;
 
 import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
 import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
 
 import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
 import static es.unizar.iaaa.ml.parameter.ParameterBuilder.integer;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * This class contains the unit tests that check the correctness of the combined
@@ -69,4 +71,51 @@ public class CombinedDistanceTest extends DistanceTest {
 		assertEquals(expected, distance, 0);
 	}
 	
+	/**
+	 * A bounded distance should be the same as the combined distance when it
+	 * is not greater than the limit.
+	 */
+	@Test
+	public void testBoundedWithinLimit() throws ParameterNotFoundException {
+		CombinedDistance combined =
+				new CombinedDistance(distances, Arrays.asList(0.4, 0.6));
+		
+		Clusterable a = getFeaturePointAndInteger("POINT (0 0)", 12);
+		Clusterable b = getFeaturePointAndInteger("POINT (4 3)", 4);
+		
+		double d = combined.distance(a, b, geom(), integer("number"));
+		assertEquals(d, combined.distanceUpTo(a, b, d, geom(), integer("number")), 0);
+		assertEquals(d, combined.bind(geom(), integer("number")).distanceUpTo(a, b, 10), 0);
+	}
+	
+	/**
+	 * A bounded distance should skip the expensive measures once the cheap
+	 * ones exceed the limit, even if they were given first.
+	 */
+	@Test
+	public void testBoundedSkipsExpensive() throws ParameterNotFoundException {
+		final int[] calls = new int[1];
+		DistanceMeasure expensive = new DistanceMeasure() {
+			@Override
+			public double distance(Clusterable a, Clusterable b, Parameter... params) {
+				calls[0]++;
+				return 1;
+			}
+		};
+		List<DistanceMeasure> list = Arrays.asList(expensive, new EuclideanDistance());
+		
+		Clusterable a = getFeaturePointAndInteger("POINT (0 0)", 12);
+		Clusterable b = getFeaturePointAndInteger("POINT (4 3)", 4);
+		
+		CombinedDistance combined = new CombinedDistance(list, Arrays.asList(1.0, 1.0));
+		assertTrue(combined.distanceUpTo(a, b, 2, geom(), geom()) > 2);
+		assertTrue(combined.bind(geom(), geom()).distanceUpTo(a, b, 2) > 2);
+		assertEquals(0, calls[0]);
+		
+		/* With negative weights, every measure is needed */
+		combined = new CombinedDistance(list, Arrays.asList(-1.0, 1.0));
+		assertEquals(4, combined.distanceUpTo(a, b, 2, geom(), geom()), 0);
+		assertEquals(1, calls[0]);
+	}
+	
 }
@@ -68,6 +68,10 @@ public abstract class DistanceTest {
         return parseWkt(lineStringType, wkt);
     }
 
+    Clusterable getFeatureWithoutGeometry() {
+        return new SimpleFeatureClusterable(pointType.buildFeature(null));
+    }
+
     Clusterable getFeaturePointAndInteger(String wkt, long number) {
     	pointAndIntegerType.add(wkt);
     	pointAndIntegerType.add(number);
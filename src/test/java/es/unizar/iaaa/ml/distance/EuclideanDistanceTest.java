@@ -3,6 +3,11 @@ package es.unizar.iaaa.ml.distance;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -75,4 +80,24 @@ public class EuclideanDistanceTest extends DistanceTest {
         assertEquals(1.666, distance, 0.001);
     }
 
+    /**
+     * Unit test that checks that a feature without geometry is at an infinite
+     * distance from any other, also when the distance is limited or computed
+     * in a batch.
+     */
+    @Test
+    public void testFeatureWithoutGeometry() throws ParameterNotFoundException {
+        Clusterable empty = getFeatureWithoutGeometry();
+        Clusterable point = getFeaturePoint("POINT(2 -2)");
+
+        assertEquals(Double.POSITIVE_INFINITY, euclidean.distance(empty, point), 0);
+        assertEquals(Double.POSITIVE_INFINITY, euclidean.distanceUpTo(empty, point, 1), 0);
+        assertEquals(Double.POSITIVE_INFINITY, euclidean.distanceUpTo(point, empty, 1), 0);
+
+        double[] out = new double[2];
+        DistanceMeasureBuilder.distances(euclidean, empty, Arrays.asList(point, empty), out);
+        assertEquals(Double.POSITIVE_INFINITY, out[0], 0);
+        assertEquals(Double.POSITIVE_INFINITY, out[1], 0);
+    }
+
 }
@@ -153,4 +153,26 @@ public class ExactHausdorffTest extends DistanceTest {
         }
     }
 
+    /**
+     * Unit test that checks that the traversal order drawn from a seed does not
+     * change the distance, as every pair of points is still considered.
+     */
+    @Test
+    public void testSeededOrderByComparisonWithJTS() throws Exception {
+        ExactHausdorffDistance seededDistance = new ExactHausdorffDistance(42);
+        List<Clusterable> list = new ArrayList<>();
+        for(SimpleFeature feature: datasetCCAA) {
+            list.add(new SimpleFeatureClusterable(feature));
+        }
+
+        for (Clusterable f1 : list) {
+            for (Clusterable f2 : list) {
+                double testDistance = seededDistance.distance(f1, f2, geom());
+                double realDistance = discreteDistance.distance(f1, f2, geom());
+
+                assertEquals(realDistance, testDistance, 0);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.integer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the unit tests that check that distances computed up to
+ * a limit are exact when they are within the limit, and greater than the limit
+ * otherwise.
+ * 
+ * @author Javier Beltran
+ */
+public class LimitedDistanceTest extends DistanceTest {
+	
+	/**
+	 * Checks the hausdorff distances with limits below, at and above every
+	 * distance.
+	 */
+	@Test
+	public void testHausdorff() throws ParameterNotFoundException {
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))"));
+		features.add(getFeaturePolygon("POLYGON ((-1 0, -2 0, -1 1, -1 0))"));
+		features.add(getFeaturePolygon("POLYGON ((3 3, 5 3, 5 6, 3 3))"));
+		features.add(getFeaturePolygon("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))"));
+		checkLimits(new ExactHausdorffDistance(), features, geom());
+		checkLimits(new IndexedHausdorffDistance(), features, geom());
+		checkLimits(new ApproximateHausdorffDistance(0.5), features, geom());
+		checkLimits(new DiscreteHausdorffDistance(), features, geom());
+	}
+	
+	/**
+	 * Checks the euclidean and combined distances, whose measures are given
+	 * the part of the limit left.
+	 */
+	@Test
+	public void testCombined() throws ParameterNotFoundException {
+		CombinedDistance combined = new CombinedDistance(
+				Arrays.<DistanceMeasure>asList(new ExactHausdorffDistance(), new AbsoluteDifferenceDistance()),
+				Arrays.asList(0.4, 0.6));
+		List<Clusterable> features = new ArrayList<>();
+		features.add(getFeaturePointAndInteger("POINT (0 0)", 12));
+		features.add(getFeaturePointAndInteger("POINT (4 3)", 4));
+		features.add(getFeaturePointAndInteger("POINT (1 7)", 9));
+		checkLimits(combined, features, geom(), integer("number"));
+		checkLimits(new EuclideanDistance(), features, geom());
+	}
+	
+	/**
+	 * The envelopes should never bound the hausdorff distance above its value.
+	 */
+	@Test
+	public void testLowerBound() throws ParameterNotFoundException {
+		Clusterable a = getFeaturePolygon("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))");
+		Clusterable b = getFeaturePolygon("POLYGON ((2 1, 3 1, 3 12, 2 1))");
+		double distance = new ExactHausdorffDistance().distance(a, b, geom());
+		double lower = PrefilteredDistance.lowerBound(a, b);
+		assertEquals(7, lower, 0);
+		assertTrue(lower <= distance);
+	}
+	
+	/**
+	 * Checks every pair of features with limits below, at and above their
+	 * distance, directly and through a bound distance.
+	 */
+	private void checkLimits(DistanceMeasure distance, List<Clusterable> features, Parameter... params)
+			throws ParameterNotFoundException {
+		BoundDistance bound = DistanceMeasureBuilder.bind(distance, params);
+		for (Clusterable a : features) {
+			for (Clusterable b : features) {
+				double expected = distance.distance(a, b, params);
+				for (double limit : new double[] {0, expected / 2, expected, expected * 2, Double.POSITIVE_INFINITY}) {
+					checkLimit(expected, limit, DistanceMeasureBuilder.distanceUpTo(distance, a, b, limit, params));
+					checkLimit(expected, limit, bound.distanceUpTo(a, b, limit));
+					assertEquals(expected <= limit, DistanceMeasureBuilder.isWithin(distance, a, b, limit, params));
+				}
+			}
+		}
+	}
+	
+	private void checkLimit(double expected, double limit, double actual) {
+		if (expected <= limit) {
+			assertEquals(expected, actual, 0);
+		} else {
+			assertTrue(actual > limit);
+		}
+	}
+	
+}
@@ -0,0 +1,138 @@
+package es.unizar.iaaa.ml.distance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import es.unizar.iaaa.ml.adapter.Clusterable;
+import es.unizar.iaaa.ml.parameter.Parameter;
+import es.unizar.iaaa.ml.parameter.ParameterNotFoundException;
+
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.geom;
+import static es.unizar.iaaa.ml.parameter.ParameterBuilder.integer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class contains the tests for the prefiltered distance.
+ *
+ * @author Javier Beltran
+ */
+public class PrefilteredDistanceTest extends DistanceTest {
+
+    /**
+     * Unit test that checks that the comparisons are the same as those of the
+     * decorated distance, directly and through a bound distance.
+     */
+    @Test
+    public void testComparisons() throws ParameterNotFoundException {
+        List<Clusterable> features = new ArrayList<>();
+        features.add(getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))"));
+        features.add(getFeaturePolygon("POLYGON ((-1 0, -2 0, -1 1, -1 0))"));
+        features.add(getFeaturePolygon("POLYGON ((3 3, 5 3, 5 6, 3 3))"));
+        features.add(getFeaturePolygon("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))"));
+
+        ExactHausdorffDistance exact = new ExactHausdorffDistance();
+        PrefilteredDistance prefiltered = new PrefilteredDistance(exact);
+        BoundDistance bound = DistanceMeasureBuilder.bind(prefiltered, geom());
+        for (Clusterable a : features) {
+            for (Clusterable b : features) {
+                double expected = exact.distance(a, b, geom());
+                for (double limit : new double[] {0, expected / 2, expected, expected * 2, 100}) {
+                    assertEquals(expected <= limit, prefiltered.isWithin(a, b, limit, geom()));
+                    assertEquals(expected <= limit, bound.isWithin(a, b, limit));
+                    double upTo = prefiltered.distanceUpTo(a, b, limit, geom());
+                    assertTrue(expected <= limit ? upTo == expected : upTo > limit);
+                }
+            }
+        }
+        assertEquals(3 * features.size() * features.size() * 5, prefiltered.getComparisons());
+        assertTrue(prefiltered.getResolved() > 0);
+    }
+
+    /**
+     * Unit test that checks that the decorated distance is not computed when
+     * the envelopes are far enough, or close enough, and that every comparison
+     * decided by them is counted as resolved.
+     */
+    @Test
+    public void testResolvedByBounds() throws ParameterNotFoundException {
+        final int[] calls = new int[1];
+        DistanceMeasure counting = new ExactHausdorffDistance() {
+            @Override
+            public double distanceUpTo(Clusterable a, Clusterable b, double limit, Parameter... params)
+                    throws ParameterNotFoundException {
+                calls[0]++;
+                return super.distanceUpTo(a, b, limit, params);
+            }
+        };
+        PrefilteredDistance prefiltered = new PrefilteredDistance(counting);
+        Clusterable a = getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))");
+        Clusterable b = getFeaturePolygon("POLYGON ((3 0, 4 0, 3 1, 3 0))");
+
+        /* The sides are 3 apart, and the diagonal of both is sqrt(17) */
+        assertFalse(prefiltered.isWithin(a, b, 2.5, geom()));
+        assertTrue(prefiltered.isWithin(a, b, 5, geom()));
+        assertEquals(0, calls[0]);
+        assertEquals(1.0, prefiltered.getResolvedFraction(), 0);
+
+        assertTrue(prefiltered.isWithin(a, b, 3.5, geom()));
+        assertEquals(1, calls[0]);
+        assertEquals(2.0 / 3, prefiltered.getResolvedFraction(), 1e-12);
+
+        /* Only the decorator rejects by the envelopes, and counts it */
+        assertTrue(prefiltered.distanceUpTo(a, b, 2.5, geom()) > 2.5);
+        assertEquals(1, calls[0]);
+        assertEquals(3.0 / 4, prefiltered.getResolvedFraction(), 1e-12);
+        assertEquals(3, prefiltered.distanceUpTo(a, b, 5, geom()), 0);
+        assertEquals(2, calls[0]);
+        assertEquals(3.0 / 5, prefiltered.getResolvedFraction(), 1e-12);
+    }
+
+    /**
+     * Unit test that checks that the bounds are not used for distance measures
+     * other than the hausdorff distances, as the euclidean distance between the
+     * centroids of two features can be far less than the gaps between the
+     * sides of their envelopes.
+     */
+    @Test
+    public void testOtherDistances() throws ParameterNotFoundException {
+        EuclideanDistance euclidean = new EuclideanDistance();
+        PrefilteredDistance prefiltered = new PrefilteredDistance(euclidean);
+        BoundDistance bound = DistanceMeasureBuilder.bind(prefiltered, geom());
+        Clusterable a = getFeaturePolygon("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))");
+        Clusterable b = getFeaturePolygon("POLYGON ((4.9 4.9, 5.1 4.9, 5.1 5.1, 4.9 5.1, 4.9 4.9))");
+        Clusterable c = getFeaturePolygon("POLYGON ((20 0, 21 0, 21 1, 20 1, 20 0))");
+
+        Clusterable[] features = {a, b, c};
+        for (Clusterable x : features) {
+            for (Clusterable y : features) {
+                double expected = euclidean.distance(x, y, geom());
+                for (double limit : new double[] {0, 1, expected, 100}) {
+                    assertEquals(DistanceMeasureBuilder.isWithin(euclidean, x, y, limit, geom()),
+                            prefiltered.isWithin(x, y, limit, geom()));
+                    assertEquals(expected <= limit, bound.isWithin(x, y, limit));
+                }
+            }
+        }
+        assertTrue(prefiltered.isWithin(a, b, 1, geom()));
+        assertEquals(0, prefiltered.getComparisons());
+    }
+
+    /**
+     * Unit test that checks that the bounds are not used for attributes that
+     * are not geometries.
+     */
+    @Test
+    public void testOtherAttributes() throws ParameterNotFoundException {
+        PrefilteredDistance prefiltered = new PrefilteredDistance(new ExactHausdorffDistance());
+        Clusterable a = getFeaturePolygon("POLYGON ((0 0, 1 0, 0 1, 0 0))");
+        Clusterable b = getFeaturePolygon("POLYGON ((3 0, 4 0, 3 1, 3 0))");
+
+        assertFalse(prefiltered.isWithin(a, b, 100, integer("number")));
+        assertEquals(0, prefiltered.getComparisons());
+    }
+
+}